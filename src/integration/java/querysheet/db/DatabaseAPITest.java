@@ -1,6 +1,7 @@
 package querysheet.db;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -37,4 +38,56 @@ public class DatabaseAPITest {
 		assertEquals(21, rs.getInt(1));
 	}
 
+	@Test
+	public void testParameterisedQueryReusesStatement() throws SQLException {
+		for (int i = 0; i < 3; i++) {
+			ResultSet rs = db.query("select age from people where age >= ? order by age limit 1", 0, 21L).resultSet();
+			rs.next();
+			assertEquals(21, rs.getInt(1));
+		}
+	}
+
+	@Test
+	public void testCachedStatementsArePreparedOnServer() throws SQLException {
+		db.query("select age from people where age >= ? order by age limit 1", 0, 21L);
+
+		ResultSet rs = db.query("select count(*) from pg_prepared_statements where statement like ?", 0,
+				"%from people where age >= $1%").resultSet();
+		rs.next();
+		assertEquals(1, rs.getInt(1));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testQueryTimeout() {
+		db.query("select pg_sleep(5)", 1);
+	}
+
+	@Test
+	public void testContinuesAfterTimeout() throws SQLException {
+		try {
+			db.query("select pg_sleep(5)", 1);
+		} catch (RuntimeException ignored) {
+		}
+
+		ResultSet rs = db.query("select age from people limit 1").resultSet();
+		rs.next();
+		assertEquals(21, rs.getInt(1));
+	}
+
+	@Test
+	public void testAttachedSnapshotIgnoresLaterChanges() throws SQLException {
+		DatabaseAPI coordinator = new DatabaseAPI();
+		DatabaseAPI worker = new DatabaseAPI();
+		try {
+			worker.attachSnapshot(coordinator.exportSnapshot());
+			db.exec("delete from people");
+
+			ResultSet rs = worker.query("select count(*) from people").resultSet();
+			rs.next();
+			assertTrue(rs.getInt(1) > 0);
+		} finally {
+			worker.close();
+			coordinator.close();
+		}
+	}
 }
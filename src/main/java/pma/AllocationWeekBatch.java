@@ -1,5 +1,6 @@
 package pma;
 
+import querysheet.batch.MemoryGovernor;
 import querysheet.batch.ResultSetToSpreadsheetBatch;
 
 import java.sql.ResultSet;
@@ -41,18 +42,26 @@ public class AllocationWeekBatch extends ResultSetToSpreadsheetBatch {
 
     protected List<AllocationWeek> weeks;
 
+    protected List<String> weekKeys = new ArrayList<>();
+
     protected List<String> persons = new ArrayList<>();
 
     protected Map<String, Map<String, List<AllocationWeek>>> allocation = new HashMap<>();
 
     protected Map<String, List<String>> personCustomers = new HashMap<>();
 
+    private Map<String, String> customerLabels = new HashMap<>();
+
     private Date firstStart;
     private Date lastEnd;
 
     public void load(ResultSet rs) {
         try {
+            long rowBytes = MemoryGovernor.estimateRowBytes(rs.getMetaData());
+
             while (rs.next()) {
+                reservation().reserve(rowBytes);
+
                 String person = addPerson(rs.getString(COLUMN_NAME_PERSON));
 
                 Date start = adjustStart(rs.getDate(COLUMN_NAME_START));
@@ -70,12 +79,29 @@ public class AllocationWeekBatch extends ResultSetToSpreadsheetBatch {
             }
 
             weeks = AllocationWeek.getWeeks(firstStart, lastEnd, 0);
+            for (AllocationWeek week : weeks) {
+                weekKeys.add(week.getKey());
+            }
             Collections.sort(persons);
+            freeze();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void freeze() {
+        for (Map.Entry<String, List<String>> entry : personCustomers.entrySet()) {
+            List<String> customers = entry.getValue();
+            Collections.sort(customers);
+            entry.setValue(Collections.unmodifiableList(customers));
+            customerLabels.put(entry.getKey(), join(customers));
+        }
+
+        weekKeys = Collections.unmodifiableList(weekKeys);
+        persons = Collections.unmodifiableList(persons);
+        personCustomers = Collections.unmodifiableMap(personCustomers);
+    }
+
     @Override
     public int rows() {
         return persons.size() + 1;
@@ -95,6 +121,38 @@ public class AllocationWeekBatch extends ResultSetToSpreadsheetBatch {
         return getValueInTable(row, column);
     }
 
+    @Override
+    public String[][] getRange(int firstRow, int lastRow) {
+        String[][] range = new String[lastRow - firstRow + 1][];
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            range[row - firstRow] = row == HEADER_ROW ? getHeaderRow() : getPersonRow(persons.get(row - ROW_OFFSET));
+        }
+
+        return range;
+    }
+
+    private String[] getHeaderRow() {
+        String[] values = new String[cols()];
+        for (int column = 1; column <= values.length; column++) {
+            values[column - 1] = getHeader(column);
+        }
+        return values;
+    }
+
+    private String[] getPersonRow(String person) {
+        String[] values = new String[cols()];
+        values[STATUS_COLUMN - 1] = allocationStatus(person);
+        values[PERSON_COLUMN - 1] = person;
+        values[CUSTOMER_COLUMN - 1] = getCustomers(person);
+
+        for (int column = COLUMN_OFFSET_TO_DATES; column <= values.length; column++) {
+            values[column - 1] = String.valueOf(getAllocation(person, column - COLUMN_OFFSET_TO_DATES));
+        }
+
+        return values;
+    }
+
     protected String getHeader(int column) {
         if (column == STATUS_COLUMN) {
             return HEADER_STATUS;
@@ -127,7 +185,7 @@ public class AllocationWeekBatch extends ResultSetToSpreadsheetBatch {
     }
 
     protected Integer getAllocation(String person, int weekIndex) {
-        return getAllocation(person, weeks.get(weekIndex).getKey());
+        return getAllocation(person, weekKeys.get(weekIndex));
     }
 
     private String addPerson(String person) {
@@ -258,13 +316,11 @@ public class AllocationWeekBatch extends ResultSetToSpreadsheetBatch {
     }
 
     private String getCustomers(String person) {
-        if (!personCustomers.containsKey(person)) {
-            return "";
-        }
-
-        List<String> customers = personCustomers.get(person);
-        Collections.sort(customers);
+        String customers = customerLabels.get(person);
+        return customers == null ? "" : customers;
+    }
 
+    private String join(List<String> customers) {
         StringBuilder builder = new StringBuilder();
 
         for (String customer : customers) {
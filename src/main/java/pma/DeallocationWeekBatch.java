@@ -29,11 +29,26 @@ public class DeallocationWeekBatch extends AllocationWeekBatch {
 
     private List<String> freeToday = new ArrayList<>();
 
+    private String[][] table;
+
     @Override
     public void load(ResultSet rs) {
         super.load(rs);
         findDeallocations();
         mergePersonsAndCustomers();
+        table = buildTable();
+    }
+
+    private String[][] buildTable() {
+        String[][] table = new String[rows()][cols()];
+
+        for (int row = 1; row <= rows(); row++) {
+            for (int column = 1; column <= cols(); column++) {
+                table[row - 1][column - 1] = getValue(row, column);
+            }
+        }
+
+        return table;
     }
 
     private void findDeallocations() {
@@ -101,6 +116,17 @@ public class DeallocationWeekBatch extends AllocationWeekBatch {
         return deallocationWeeks.size() + 2;
     }
 
+    @Override
+    public String[][] getRange(int firstRow, int lastRow) {
+        String[][] range = new String[lastRow - firstRow + 1][];
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            range[row - firstRow] = table[row - 1].clone();
+        }
+
+        return range;
+    }
+
     @Override
     protected String getHeader(int column) {
         if (column == CUSTOMER_COLUMN) {
@@ -0,0 +1,262 @@
+package querysheet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.batch.CellSink;
+import querysheet.batch.ResultSetToSpreadsheetBatch;
+import querysheet.utils.Setup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+public class Checkpoint {
+
+    private static final String SEPARATOR = "\t";
+
+    private static final String QUEUED = "queued";
+
+    private static final String COMPLETED = "done";
+
+    private static Logger logger = LoggerFactory.getLogger(Checkpoint.class);
+
+    private final File file;
+
+    private final long freshness;
+
+    private Map<Integer, Entry> entries = new HashMap<>();
+
+    public static class Entry {
+
+        private final int row;
+
+        private final String queryHash;
+
+        private final String fingerprint;
+
+        private final long completedAt;
+
+        private final long elapsed;
+
+        private final int rows;
+
+        private final boolean queued;
+
+        private Entry(int row, String queryHash, String fingerprint, long completedAt, long elapsed, int rows,
+                      boolean queued) {
+            this.row = row;
+            this.queryHash = queryHash;
+            this.fingerprint = fingerprint;
+            this.completedAt = completedAt;
+            this.elapsed = elapsed;
+            this.rows = rows;
+            this.queued = queued;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCompletedAt() {
+            return completedAt;
+        }
+
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public boolean isQueued() {
+            return queued;
+        }
+    }
+
+    public Checkpoint(File dir, String key, long freshness) {
+        this.file = new File(dir, key.replaceAll("[^A-Za-z0-9_-]", "_") + ".checkpoint");
+        this.freshness = freshness;
+        load();
+    }
+
+    public synchronized Entry completed(SetupRow setup) {
+        // statements build session state (staging tables) that a resumed run does not have, so they always re-run
+        if (setup.isStatement()) {
+            return null;
+        }
+
+        Entry entry = entries.get(setup.getIndex());
+
+        if (entry == null || !entry.queryHash.equals(hash(setup))) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - entry.completedAt > freshness) {
+            return null;
+        }
+
+        return entry;
+    }
+
+    public synchronized void record(SetupRow setup, String fingerprint, long elapsed, int rows, boolean queued) {
+        if (setup.isStatement()) {
+            return;
+        }
+
+        Entry entry = new Entry(setup.getIndex(), hash(setup), fingerprint, System.currentTimeMillis(), elapsed, rows,
+                queued);
+
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("could not create " + dir);
+            }
+
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+            try {
+                writer.write(entry.row + SEPARATOR + entry.queryHash + SEPARATOR + entry.fingerprint + SEPARATOR
+                        + entry.completedAt + SEPARATOR + entry.elapsed + SEPARATOR + entry.rows + SEPARATOR
+                        + (entry.queued ? QUEUED : COMPLETED) + "\n");
+            } finally {
+                writer.close();
+            }
+
+            entries.put(entry.row, entry);
+        } catch (IOException e) {
+            logger.warn(String.format("could not write checkpoint: file=%s, error=%s", file, e.getMessage()));
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        file.delete();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(SEPARATOR);
+
+                    if (fields.length != 6 && fields.length != 7) {
+                        continue;
+                    }
+
+                    try {
+                        Entry entry = new Entry(Integer.parseInt(fields[0]), fields[1], fields[2], Long.parseLong(fields[3]),
+                                Long.parseLong(fields[4]), Integer.parseInt(fields[5]),
+                                fields.length == 7 && QUEUED.equals(fields[6]));
+                        entries.put(entry.row, entry);
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            logger.warn(String.format("ignoring unreadable checkpoint: file=%s, error=%s", file, e.getMessage()));
+            entries.clear();
+        }
+    }
+
+    static String hash(SetupRow setup) {
+        return hash(setup, true);
+    }
+
+    static String definitionHash(SetupRow setup) {
+        return hash(setup, false);
+    }
+
+    private static String hash(SetupRow setup, boolean resolved) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String value : new String[]{setup.getQuery(), setup.getSpreadsheet(), setup.getWorksheet(),
+                    setup.getBatch(), setup.getOptions(), setup.getPartition(), setup.getPartitionSpreadsheet()}) {
+                digest.update(String.valueOf(value).getBytes("UTF-8"));
+                digest.update((byte) 0);
+            }
+
+            if (resolved) {
+                for (Object value : setup.getBindValues()) {
+                    String typed = value == null ? "null" : value.getClass().getSimpleName() + ":" + value;
+                    digest.update(typed.getBytes("UTF-8"));
+                    digest.update((byte) 0);
+                }
+            } else if (setup.getParams() != null) {
+                digest.update(setup.getParams().getBytes("UTF-8"));
+            }
+
+            if (!Setup.DEFAULT_DATASOURCE.equals(setup.getDataSource())) {
+                digest.update((byte) 0);
+                digest.update(setup.getDataSource().getBytes("UTF-8"));
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static String fingerprint(ResultSetToSpreadsheetBatch batch) {
+        final CRC32 crc = new CRC32();
+
+        batch.stream(new CellSink() {
+            @Override
+            public void startRow(int row) {
+            }
+
+            @Override
+            public void cell(int column, CharSequence value) {
+                try {
+                    crc.update(value.toString().getBytes("UTF-8"));
+                    crc.update(0);
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void endRow(int row) {
+                crc.update('\n');
+            }
+        });
+
+        return String.format("%dx%d-%08x", batch.rows(), batch.cols(), crc.getValue());
+    }
+
+    public static String combine(List<String> fingerprints) {
+        CRC32 crc = new CRC32();
+
+        for (String fingerprint : fingerprints) {
+            crc.update(fingerprint.getBytes(Charset.forName("UTF-8")));
+            crc.update(0);
+        }
+
+        return String.format("%dp-%08x", fingerprints.size(), crc.getValue());
+    }
+}
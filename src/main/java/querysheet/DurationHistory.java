@@ -0,0 +1,117 @@
+package querysheet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DurationHistory {
+
+    private static final double SMOOTHING = 0.5;
+
+    private static Logger logger = LoggerFactory.getLogger(DurationHistory.class);
+
+    private final File file;
+
+    private final Gson gson = new Gson();
+
+    private Map<String, Durations> durations = new HashMap<>();
+
+    public DurationHistory(File dir, String key) {
+        this.file = new File(dir, key.replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+        load();
+    }
+
+    public synchronized Long estimate(SetupRow setup) {
+        Durations entry = durations.get(Checkpoint.definitionHash(setup));
+        return entry == null ? null : entry.query + entry.upload;
+    }
+
+    public synchronized void record(SetupRow setup, long query, long upload) {
+        // keyed on the raw params text, so rows using today() keep one history instead of one per day
+        String hash = Checkpoint.definitionHash(setup);
+        Durations entry = durations.get(hash);
+
+        if (entry == null) {
+            entry = new Durations();
+            entry.query = query;
+            entry.upload = upload;
+            durations.put(hash, entry);
+        } else {
+            entry.query = smooth(entry.query, query);
+            entry.upload = smooth(entry.upload, upload);
+        }
+    }
+
+    public synchronized void save() {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("could not create " + dir);
+            }
+
+            File tmp = File.createTempFile("durations", ".tmp", dir);
+            Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+            try {
+                gson.toJson(durations, writer);
+            } finally {
+                writer.close();
+            }
+
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    throw new IOException("could not replace " + file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn(String.format("could not write durations: file=%s, error=%s", file, e.getMessage()));
+        }
+    }
+
+    private long smooth(long previous, long current) {
+        return Math.round(SMOOTHING * current + (1 - SMOOTHING) * previous);
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                Map<String, Durations> loaded = gson.fromJson(reader, new TypeToken<Map<String, Durations>>() {
+                }.getType());
+
+                if (loaded != null) {
+                    durations = loaded;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn(String.format("ignoring unreadable durations: file=%s, error=%s", file, e.getMessage()));
+        }
+    }
+
+    private static class Durations {
+
+        private long query;
+
+        private long upload;
+    }
+}
@@ -0,0 +1,25 @@
+package querysheet;
+
+import com.github.feroult.gapi.SpreadsheetAPI;
+
+import java.util.Map;
+
+// without Sheets API credentials statuses go out as before: the status text only, one row at a time.
+// gapi's batch always rewrites the block from A1, which would put start-of-run values back over every
+// Setup cell up to the last status row, so batching and the extra columns require credentials
+public class GapiStatusWriter extends StatusWriter {
+
+    private final SpreadsheetAPI sheet;
+
+    public GapiStatusWriter(SpreadsheetAPI sheet, String worksheet) {
+        super(null, null, worksheet, 0);
+        this.sheet = sheet;
+    }
+
+    @Override
+    protected void write(Map<Integer, String[]> rows) {
+        for (Map.Entry<Integer, String[]> row : rows.entrySet()) {
+            sheet.setValue(row.getKey(), STATUS_COLUMN, row.getValue()[0]);
+        }
+    }
+}
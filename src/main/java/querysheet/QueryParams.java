@@ -0,0 +1,128 @@
+package querysheet;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class QueryParams {
+
+    private static final Pattern DATE_FUNCTION = Pattern.compile("(today|week_start)\\(\\)\\s*(([+-])\\s*(\\d+))?",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ISO_DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    private static final Pattern INTEGER = Pattern.compile("-?\\d+");
+
+    private static final Pattern DECIMAL = Pattern.compile("-?\\d*\\.\\d+");
+
+    public static Object[] parse(String params, Date today) {
+        if (params == null || params.trim().isEmpty()) {
+            return new Object[0];
+        }
+
+        List<Object> values = new ArrayList<>();
+        for (String token : split(params)) {
+            values.add(value(token, today));
+        }
+        return values.toArray();
+    }
+
+    private static List<String> split(String params) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < params.length(); i++) {
+            char c = params.charAt(i);
+
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+
+            if (c == ',' && !quoted) {
+                tokens.add(token.toString().trim());
+                token.setLength(0);
+            } else {
+                token.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new RuntimeException("unterminated quote in params: " + params);
+        }
+
+        tokens.add(token.toString().trim());
+        return tokens;
+    }
+
+    private static Object value(String token, Date today) {
+        if (token.length() >= 2 && token.startsWith("'") && token.endsWith("'")) {
+            return token.substring(1, token.length() - 1).replace("''", "'");
+        }
+
+        if (token.equalsIgnoreCase("null")) {
+            return null;
+        }
+
+        if (token.equalsIgnoreCase("true") || token.equalsIgnoreCase("false")) {
+            return Boolean.valueOf(token);
+        }
+
+        if (INTEGER.matcher(token).matches()) {
+            return Long.valueOf(token);
+        }
+
+        if (DECIMAL.matcher(token).matches()) {
+            return new BigDecimal(token);
+        }
+
+        if (ISO_DATE.matcher(token).matches()) {
+            return isoDate(token);
+        }
+
+        Matcher function = DATE_FUNCTION.matcher(token);
+        if (function.matches()) {
+            return dateFunction(function, today);
+        }
+
+        return token;
+    }
+
+    private static java.sql.Date isoDate(String token) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+
+        try {
+            return new java.sql.Date(format.parse(token).getTime());
+        } catch (ParseException e) {
+            throw new RuntimeException("invalid date param: " + token);
+        }
+    }
+
+    private static java.sql.Date dateFunction(Matcher function, Date today) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(today);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        if (function.group(1).equalsIgnoreCase("week_start")) {
+            int sinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+            calendar.add(Calendar.DATE, -sinceMonday);
+        }
+
+        if (function.group(2) != null) {
+            int days = Integer.parseInt(function.group(4));
+            calendar.add(Calendar.DATE, function.group(3).equals("-") ? -days : days);
+        }
+
+        return new java.sql.Date(calendar.getTimeInMillis());
+    }
+}
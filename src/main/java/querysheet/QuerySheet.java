@@ -1,19 +1,37 @@
 package querysheet;
 
-import com.github.feroult.gapi.BatchOptions;
 import com.github.feroult.gapi.GoogleAPI;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import querysheet.batch.MemoryGovernor;
+import querysheet.batch.PartitionedTable;
 import querysheet.batch.ResultSetToSpreadsheetBatch;
 import querysheet.batch.TableToSpreadsheetBatch;
+import querysheet.db.DataSources;
 import querysheet.db.DatabaseAPI;
+import querysheet.google.GoogleClients;
+import querysheet.outbox.Outbox;
+import querysheet.outbox.OutboxUploader;
+import querysheet.upload.ChunkedUpload;
+import querysheet.upload.CsvUpload;
+import querysheet.upload.GapiUpload;
+import querysheet.upload.PackedUpload;
+import querysheet.upload.ShardedUpload;
+import querysheet.upload.SheetsRangeWriter;
+import querysheet.upload.UploadGroup;
 import querysheet.utils.Setup;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class QuerySheet {
 
@@ -21,11 +39,43 @@ public class QuerySheet {
 
     private static final int SLEEP_MS = 30000;
 
+    private static final String SETUP_WORKSHEET = "Setup";
+
+    private static final String SHARED_WORKSHEET = "Shared";
+
+    private static final String STATEMENT_FINGERPRINT = "statement";
+
     private static Logger logger = LoggerFactory.getLogger(QuerySheet.class);
 
     private GoogleAPI google = new GoogleAPI();
 
-    private DatabaseAPI db;
+    private ExecutorService uploads;
+
+    private StatusWriter statuses;
+
+    private Outbox outbox = new Outbox(new File(Setup.getOutbox()));
+
+    private OutboxUploader outboxUploader;
+
+    private Checkpoint checkpoint;
+
+    private DurationHistory durations;
+
+    private SharedFragments shared;
+
+    private DataSources dataSources;
+
+    private RunDeadline deadline;
+
+    private AtomicInteger deferred = new AtomicInteger();
+
+    private SetupCache setupCache = new SetupCache(new File(Setup.getSetupCache()));
+
+    private ChunkedUpload chunkedUpload;
+
+    private CsvUpload csvUpload;
+
+    private PackedUpload packedUpload;
 
     public static void main(String[] args) {
         String key = Setup.getSetupSpreadsheetKey();
@@ -40,84 +90,491 @@ public class QuerySheet {
     public void process(String key) {
         logger.info("setup key: " + key);
 
-        db = new DatabaseAPI();
+        uploads = Executors.newFixedThreadPool(Setup.getUploadThreads());
+
+        outboxUploader = new OutboxUploader(outbox, google, Setup.getUploadRetries(), Setup.getOutboxRetryWait());
+        outboxUploader.start();
+
+        statuses = statusWriter(key);
+
+        checkpoint = new Checkpoint(new File(Setup.getCheckpoints()), key, Setup.getCheckpointFreshness());
+
+        durations = new DurationHistory(new File(Setup.getDurations()), key);
+
+        deadline = new RunDeadline(Setup.getDeadline());
+        deadline.start();
+        deferred.set(0);
 
         try {
-            int time = 0;
-            int row = 0;
-            Date data;
+            Long modified = setupModified(key);
+            List<Map<String, String>> queries = readWorksheet(key, SETUP_WORKSHEET, modified);
+            List<Map<String, String>> fragments = readShared(key, modified);
+            shared = new SharedFragments(fragments);
+
+            SetupStamp stamp = new SetupStamp(key, modified);
+            statuses.setStamp(stamp);
+
+            List<SetupRow> rows = new ArrayList<>();
+            for (int row = 0; row < queries.size(); row++) {
+                rows.add(new SetupRow(row, queries.get(row)));
+            }
+
+            long time = runRows(new RowScheduler(durations, Setup.getQueryWorkers() > 1).order(rows));
 
-            List<Map<String, String>> queries = google.spreadsheet(key).worksheet("Setup").asMap();
+            outboxUploader.await(Math.min(Setup.getOutboxWait(), deadline.remaining()));
+            statuses.flush();
+            restamp(key, modified, stamp.confirmed(), queries, fragments);
 
-            while (row < queries.size()) {
-                data = new Date();
-                SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm");
-                Map<String, String> querySetup = queries.get(row);
+            if (deferred.get() == 0) {
+                checkpoint.clear();
+            } else {
+                logger.info(String.format("deferred %d rows at the run deadline, keeping checkpoint for the next run",
+                        deferred.get()));
+            }
 
+            MemoryGovernor governor = MemoryGovernor.getInstance();
+            logger.info(String.format("total=%d ms, peak reserved=%d/%d bytes", time, governor.peak(), governor.budget()));
+        } finally {
+            deadline.stop();
+            statuses.flush();
+            durations.save();
+            outboxUploader.await(0);
+            uploads.shutdown();
+        }
+    }
+
+    private long runRows(List<SetupRow> rows) {
+        RowGraph graph = new RowGraph(rows);
+        int workers = Math.max(1, Math.min(Setup.getQueryWorkers(), rows.size()));
+        RowGraph.checkSessionLocal(rows, workers);
+
+        DatabaseAPI coordinator = null;
+        String snapshot = null;
+        if (Setup.isConsistentSnapshot()) {
+            RowGraph.checkSnapshot(rows, workers);
+            prepareShared(rows);
+            coordinator = new DatabaseAPI();
+            snapshot = coordinator.exportSnapshot();
+            logger.info(String.format("exported snapshot %s for %d query workers", snapshot, workers));
+        }
+        dataSources = new DataSources(snapshot);
+
+        try {
+            if (workers == 1) {
+                return new RowWorker(graph).call();
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(workers);
+            try {
+                List<Future<Long>> results = new ArrayList<>();
+                for (int i = 0; i < workers; i++) {
+                    results.add(executor.submit(new RowWorker(graph)));
+                }
+
+                long time = 0;
+                for (Future<Long> result : results) {
+                    time += result.get();
+                }
+                return time;
+            } finally {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            dataSources.close();
+            if (coordinator != null) {
+                coordinator.close();
+            }
+            dropShared();
+        }
+    }
+
+    // snapshot connections would keep fragments inside their own transaction, so materialize before the export
+    private void prepareShared(List<SetupRow> rows) {
+        Map<String, DatabaseAPI> connections = new HashMap<>();
+
+        try {
+            for (SetupRow row : rows) {
+                if (checkpoint.completed(row) != null || shared.referencedBy(row.getQuery()).isEmpty()) {
+                    continue;
+                }
+
+                DatabaseAPI db = connections.get(row.getDataSource());
+                if (db == null) {
+                    db = connect(row.getDataSource());
+                    connections.put(row.getDataSource(), db);
+                }
+                shared.prepare(row.getDataSource(), db, row.getQuery(), row.getTimeout());
+            }
+        } finally {
+            for (DatabaseAPI db : connections.values()) {
+                db.close();
+            }
+        }
+    }
+
+    private void dropShared() {
+        for (String source : shared.sources()) {
+            try {
+                DatabaseAPI db = connect(source);
                 try {
-                    time += processQuery(querySetup.get("query"), querySetup.get("spreadsheet"), querySetup.get("worksheet"),
-                            querySetup.get("batch"), createtBatchOptions(querySetup.get("options")));
-
-                    google.spreadsheet(key).worksheet("Setup").setValue(row + 2, 1, "Success - " + sdf.format(data));
-                    row++;
-                } catch (RuntimeException e) {
-                    try {
-                        String message = e.getMessage();
-                        int index = message.indexOf("\n");
-                        String split = message.substring(index + 1);
-
-                        JsonParser parser = new JsonParser();
-                        JsonObject json = (JsonObject) parser.parse(split);
-
-                        if (json.get("code").getAsInt() == 429) {
-                            try {
-                                logger.info("Quota read requests exceeded, waiting to continue...");
-                                Thread.sleep(SLEEP_MS);
-                                logger.info("Resuming...");
-                            } catch (InterruptedException ignored) {}
-                        } else {
-                            google.spreadsheet(key).worksheet("Setup").setValue(row + 2, 1, "Error       - " + sdf.format(data));
-                            row++;
-                        }
-                    } catch (Exception ex) {
-                        google.spreadsheet(key).worksheet("Setup").setValue(row + 2, 1, "Error       - " + sdf.format(data));
-                        row++;
-                    }
-                } catch (Exception e) {
-                    google.spreadsheet(key).worksheet("Setup").setValue(row + 2, 1, "Error       - " + sdf.format(data));
-                    row++;
+                    shared.drop(source, db);
+                } finally {
+                    db.close();
                 }
+            } catch (RuntimeException e) {
+                logger.warn(String.format("could not drop shared fragments from %s, the next run replaces them: %s",
+                        source, e.getMessage()));
             }
-            logger.info(String.format("total=%d ms", time));
+        }
+    }
+
+    private DatabaseAPI connect(String source) {
+        return new DatabaseAPI(Setup.getJdbcUrl(source), Setup.getUser(source), Setup.getPassword(source));
+    }
+
+    private Long runRow(SetupRow querySetup) {
+        Checkpoint.Entry completed = checkpoint.completed(querySetup);
+        if (completed != null) {
+            logger.info(String.format("skipping row %d, completed at %s with fingerprint %s",
+                    querySetup.getSheetRow(), new Date(completed.getCompletedAt()), completed.getFingerprint()));
+            if (completed.isQueued()) {
+                statuses.queued(querySetup, new Date(completed.getCompletedAt()), completed.getElapsed(),
+                        completed.getRows());
+            } else {
+                statuses.success(querySetup, new Date(completed.getCompletedAt()), completed.getElapsed(),
+                        completed.getRows());
+            }
+            statuses.flushIfDue();
+            return 0L;
+        }
+
+        if (!deadline.fits(durations.estimate(querySetup))) {
+            defer(querySetup, new Date(), "estimated duration exceeds the remaining run time");
+            return null;
+        }
+
+        DatabaseAPI db;
+        try {
+            db = dataSources.get(querySetup.getDataSource()).acquire(isRead(querySetup));
+        } catch (RuntimeException e) {
+            statuses.error(querySetup, new Date(), 0, e);
+            statuses.flushIfDue();
+            return null;
+        }
+
+        try {
+            return runRow(querySetup, db);
         } finally {
-            db.close();
+            db.release();
+        }
+    }
+
+    private Long runRow(SetupRow querySetup, DatabaseAPI db) {
+        while (true) {
+            Date data = new Date();
+
+            if (deadline.passed()) {
+                defer(querySetup, data, "run deadline reached");
+                return null;
+            }
+
+            deadline.register(db);
+            try {
+                QueryResult result = processQuery(querySetup, db);
+
+                if (result.queued) {
+                    statuses.queued(querySetup, data, result.elapsed, result.rows);
+                } else {
+                    statuses.success(querySetup, data, result.elapsed, result.rows);
+                }
+                checkpoint.record(querySetup, result.fingerprint, result.elapsed, result.rows, result.queued);
+                durations.record(querySetup, result.queryElapsed, result.elapsed - result.queryElapsed);
+                statuses.flushIfDue();
+                return result.elapsed;
+            } catch (RuntimeException e) {
+                if (deadline.passed()) {
+                    defer(querySetup, data, "cancelled at the run deadline");
+                    return null;
+                }
+
+                if (!isQuotaExceeded(e)) {
+                    statuses.error(querySetup, data, elapsedSince(data), e);
+                    statuses.flushIfDue();
+                    return null;
+                }
+
+                try {
+                    logger.info("Quota read requests exceeded, waiting to continue...");
+                    Thread.sleep(SLEEP_MS);
+                    logger.info("Resuming...");
+                } catch (InterruptedException ignored) {}
+            } finally {
+                deadline.unregister(db);
+            }
+        }
+    }
+
+    private boolean isRead(SetupRow setup) {
+        // replicas are read-only and may lag, so staging, dependent and fragment rows stay on the primary
+        return !setup.isStatement() && setup.getDependsOn().isEmpty() && shared.referencedBy(setup.getQuery()).isEmpty();
+    }
+
+    private void skip(SetupRow setup, SetupRow dependency) {
+        String reason = String.format("depends on row %d, which did not complete", dependency.getSheetRow());
+        logger.info(String.format("skipping row %d: %s", setup.getSheetRow(), reason));
+        statuses.skipped(setup, new Date(), reason);
+        statuses.flushIfDue();
+    }
+
+    private void defer(SetupRow setup, Date start, String reason) {
+        logger.info(String.format("deferring row %d: %s", setup.getSheetRow(), reason));
+        deferred.incrementAndGet();
+        statuses.deferred(setup, start, reason);
+        statuses.flushIfDue();
+    }
+
+    private boolean isQuotaExceeded(RuntimeException e) {
+        try {
+            String message = e.getMessage();
+            int index = message.indexOf("\n");
+            String split = message.substring(index + 1);
+
+            JsonParser parser = new JsonParser();
+            JsonObject json = (JsonObject) parser.parse(split);
+
+            return json.get("code").getAsInt() == 429;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private List<Map<String, String>> readWorksheet(String key, String worksheet, Long modified) {
+        String cacheKey = cacheKey(key, worksheet);
+
+        if (modified != null) {
+            List<Map<String, String>> cached = setupCache.get(cacheKey, modified);
+
+            if (cached != null) {
+                logger.info(String.format("%s unchanged since last run, using cached configuration", worksheet));
+                return cached;
+            }
         }
+
+        List<Map<String, String>> rows = readRows(key, worksheet);
+
+        if (modified != null) {
+            setupCache.put(cacheKey, modified, rows);
+        }
+
+        return rows;
     }
 
-    private BatchOptions[] createtBatchOptions(String optionsString) {
-        if (optionsString == null) {
-            return new BatchOptions[]{};
+    private List<Map<String, String>> readRows(String key, String worksheet) {
+        if (Setup.hasClientCredentials()) {
+            try {
+                return new SheetsRangeWriter().readMaps(key, worksheet);
+            } catch (RuntimeException e) {
+                logger.warn(String.format("could not read %s through the Sheets API, falling back to gapi: %s",
+                        worksheet, e.getMessage()));
+            }
         }
+        return google.spreadsheet(key).worksheet(worksheet).asMap();
+    }
 
-        optionsString = optionsString.toUpperCase();
+    private List<Map<String, String>> readShared(String key, Long modified) {
+        try {
+            return readWorksheet(key, SHARED_WORKSHEET, modified);
+        } catch (RuntimeException e) {
+            if (!Setup.hasClientCredentials()) {
+                logger.warn("could not read shared fragments, running without them: " + e.getMessage());
+                return new ArrayList<>();
+            }
+            if (new SheetsRangeWriter().hasSheet(key, SHARED_WORKSHEET)) {
+                throw e;
+            }
 
-        List<BatchOptions> options = new ArrayList<BatchOptions>();
+            logger.info("no " + SHARED_WORKSHEET + " worksheet, running without shared fragments");
+            return new ArrayList<>();
+        }
+    }
 
-        if (optionsString.contains(BatchOptions.SHRINK.toString())) {
-            options.add(BatchOptions.SHRINK);
+    // our status writes bump the modified time, carry the rows over to it when only we wrote since the read
+    private void restamp(String key, Long modified, Long stamp, List<Map<String, String>> queries,
+                         List<Map<String, String>> fragments) {
+        if (stamp == null || stamp.equals(modified)) {
+            return;
         }
 
-        return options.toArray(new BatchOptions[]{});
+        setupCache.put(cacheKey(key, SETUP_WORKSHEET), stamp, queries);
+        setupCache.put(cacheKey(key, SHARED_WORKSHEET), stamp, fragments);
     }
 
-    private long processQuery(String query, String key, String worksheet, String batchClass, BatchOptions[] batchOptions) {
+    private String cacheKey(String key, String worksheet) {
+        return SETUP_WORKSHEET.equals(worksheet) ? key : key + "-" + worksheet;
+    }
+
+    private Long setupModified(String key) {
+        try {
+            return GoogleClients.drive().files().get(key).setFields("modifiedDate").execute().getModifiedDate().getValue();
+        } catch (Exception e) {
+            logger.warn("could not read setup modified time: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private QueryResult processQuery(SetupRow setup, DatabaseAPI db) {
         long time = System.currentTimeMillis();
-        google.spreadsheet(key).worksheet(worksheet).batch(createBatch(query, batchClass), batchOptions);
-        time = System.currentTimeMillis() - time;
+        QueryResult result;
 
-        logger.info(String.format("elapsed=%d ms, query=%s, spreadsheet=%s, worksheet=%s", time, truncate(query), key, worksheet));
+        shared.prepare(setup.getDataSource(), db, setup.getQuery(), setup.getTimeout());
+        long prepared = System.currentTimeMillis() - time;
+
+        if (setup.isStatement()) {
+            result = processStatement(setup, db);
+        } else if (setup.getPartition() != null) {
+            result = processPartitions(setup, db);
+        } else {
+            result = processBatch(setup, db);
+        }
+
+        result.elapsed = System.currentTimeMillis() - time;
+        result.queryElapsed += prepared;
+
+        logger.info(String.format("elapsed=%d ms, db=%d ms, reserved=%d bytes, rows=%d, query=%s, spreadsheet=%s, worksheet=%s",
+                result.elapsed, result.queryElapsed, result.reserved, result.rows, truncate(setup.getQuery()), setup.getSpreadsheet(),
+                setup.getWorksheet()));
+
+        return result;
+    }
 
-        return time;
+    private long elapsedSince(Date start) {
+        return System.currentTimeMillis() - start.getTime();
+    }
+
+    private QueryResult processStatement(SetupRow setup, DatabaseAPI db) {
+        long time = System.currentTimeMillis();
+        db.exec(shared.expand(setup.getQuery()), setup.getTimeout(), setup.getBindValues());
+
+        QueryResult result = new QueryResult(MemoryGovernor.getInstance().reserved(), 0);
+        result.queryElapsed = System.currentTimeMillis() - time;
+        result.fingerprint = STATEMENT_FINGERPRINT;
+        return result;
+    }
+
+    private QueryResult processBatch(SetupRow setup, DatabaseAPI db) {
+        String key = setup.getSpreadsheet();
+        String worksheet = setup.getWorksheet();
+        Integer shardRows = setup.getShardRows();
+        Integer chunkRows = setup.getChunkRows();
+
+        long time = System.currentTimeMillis();
+        ResultSetToSpreadsheetBatch batch = createBatchInstance(setup.getBatch());
+        try {
+            batch.load(db.query(shared.expand(setup.getQuery()), setup.getTimeout(), setup.getBindValues()).resultSet());
+
+            QueryResult result = new QueryResult(MemoryGovernor.getInstance().reserved(), dataRows(batch));
+            result.queryElapsed = System.currentTimeMillis() - time;
+            result.fingerprint = Checkpoint.fingerprint(batch);
+
+            if (shardRows != null) {
+                if (shardRows.intValue() == SetupRow.AUTO_SHARD_ROWS) {
+                    shardRows = ShardedUpload.shardRows(Setup.getShardCells(), batch.cols());
+                }
+                new ShardedUpload(google, uploads).upload(key, worksheet, batch, shardRows, setup.getBatchOptions());
+            } else if (setup.isOutboxUpload()) {
+                outboxUploader.submit(outbox.append(key, worksheet, batch, setup.getBatchOptions()));
+                result.queued = true;
+            } else if (setup.isCsvUpload()) {
+                csvUpload().upload(key, worksheet, batch);
+            } else if (chunkRows != null) {
+                chunkedUpload().upload(key, worksheet, batch, chunkRows, setup.getBatchOptions());
+            } else if (setup.isSheetsUpload()) {
+                packedUpload().upload(key, worksheet, batch, setup.getBatchOptions());
+            } else {
+                google.spreadsheet(key).worksheet(worksheet).batch(batch, setup.getBatchOptions());
+            }
+
+            return result;
+        } finally {
+            batch.close();
+        }
+    }
+
+    private StatusWriter statusWriter(String key) {
+        if (!Setup.hasClientCredentials()) {
+            logger.warn("Sheets API credentials not configured, writing the status column row by row through gapi; "
+                    + "batched statuses with elapsed_ms, rows and error need QS_CLIENT_ID, QS_CLIENT_SECRET and "
+                    + "QS_REFRESH_TOKEN");
+            return new GapiStatusWriter(google.spreadsheet(key).worksheet(SETUP_WORKSHEET), SETUP_WORKSHEET);
+        }
+        return new StatusWriter(new SheetsRangeWriter(), key, SETUP_WORKSHEET, Setup.getStatusFlush());
+    }
+
+    private synchronized ChunkedUpload chunkedUpload() {
+        if (chunkedUpload == null) {
+            chunkedUpload = new ChunkedUpload(new SheetsRangeWriter(), uploads, Setup.getUploadInFlight(),
+                    Setup.getUploadRetries());
+        }
+        return chunkedUpload;
+    }
+
+    private synchronized PackedUpload packedUpload() {
+        if (packedUpload == null) {
+            packedUpload = new PackedUpload(new SheetsRangeWriter(), Setup.getRequestBytes());
+        }
+        return packedUpload;
+    }
+
+    private synchronized CsvUpload csvUpload() {
+        if (csvUpload == null) {
+            csvUpload = new CsvUpload();
+        }
+        return csvUpload;
+    }
+
+    private QueryResult processPartitions(SetupRow setup, DatabaseAPI db) {
+        PartitionedTable table = new PartitionedTable(createTableBatchClass(setup.getBatch()), setup.getPartition(),
+                setup.getPartitionSpreadsheet());
+        try {
+            long time = System.currentTimeMillis();
+            table.load(db.query(shared.expand(setup.getQuery()), setup.getTimeout(), setup.getBindValues()).resultSet());
+            QueryResult result = new QueryResult(MemoryGovernor.getInstance().reserved(), 0);
+            result.queryElapsed = System.currentTimeMillis() - time;
+
+            UploadGroup group = new UploadGroup(uploads);
+            List<String> fingerprints = new ArrayList<>();
+
+            for (String partition : table.partitions()) {
+                result.rows += dataRows(table.getBatch(partition));
+                fingerprints.add(partition + "=" + Checkpoint.fingerprint(table.getBatch(partition)));
+
+                if (setup.getPartitionSpreadsheet() == null) {
+                    group.submit(new GapiUpload(google, setup.getSpreadsheet(), setup.getWorksheet() + "_" + partition,
+                            table.getBatch(partition), setup.getBatchOptions()));
+                } else {
+                    group.submit(new GapiUpload(google, table.getSpreadsheet(partition), setup.getWorksheet(),
+                            table.getBatch(partition), setup.getBatchOptions()));
+                }
+            }
+
+            group.await();
+            result.fingerprint = Checkpoint.combine(fingerprints);
+
+            logger.info(String.format("partitioned by %s into %d worksheets", setup.getPartition(), table.partitions().size()));
+
+            return result;
+        } finally {
+            table.close();
+        }
+    }
+
+    private int dataRows(ResultSetToSpreadsheetBatch batch) {
+        return Math.max(0, batch.rows() - 1);
     }
 
     private Object truncate(String s) {
@@ -127,12 +584,6 @@ public class QuerySheet {
         return s;
     }
 
-    private ResultSetToSpreadsheetBatch createBatch(String query, String batchClass) {
-        ResultSetToSpreadsheetBatch batch = createBatchInstance(batchClass);
-        batch.load(db.query(query).resultSet());
-        return batch;
-    }
-
     private ResultSetToSpreadsheetBatch createBatchInstance(String batchClass) {
         if (batchClass == null || batchClass.equals("")) {
             return new TableToSpreadsheetBatch();
@@ -145,4 +596,67 @@ public class QuerySheet {
         }
     }
 
+    private Class<? extends TableToSpreadsheetBatch> createTableBatchClass(String batchClass) {
+        if (batchClass == null || batchClass.equals("")) {
+            return TableToSpreadsheetBatch.class;
+        }
+
+        try {
+            return Class.forName(batchClass).asSubclass(TableToSpreadsheetBatch.class);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class RowWorker implements Callable<Long> {
+
+        private final RowGraph graph;
+
+        private RowWorker(RowGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public Long call() throws InterruptedException {
+            long time = 0;
+            SetupRow setup;
+
+            while ((setup = graph.take()) != null) {
+                Long elapsed = null;
+                try {
+                    elapsed = runRow(setup);
+                } finally {
+                    for (SetupRow skipped : graph.done(setup, elapsed != null)) {
+                        skip(skipped, setup);
+                    }
+                }
+
+                if (elapsed != null) {
+                    time += elapsed;
+                }
+            }
+
+            return time;
+        }
+    }
+
+    private static class QueryResult {
+
+        private long elapsed;
+
+        private long queryElapsed;
+
+        private long reserved;
+
+        private int rows;
+
+        private boolean queued;
+
+        private String fingerprint;
+
+        private QueryResult(long reserved, int rows) {
+            this.reserved = reserved;
+            this.rows = rows;
+        }
+    }
 }
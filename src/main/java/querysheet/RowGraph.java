@@ -0,0 +1,193 @@
+package querysheet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class RowGraph {
+
+    private final Map<SetupRow, Integer> ranks = new HashMap<>();
+
+    private final Map<SetupRow, List<SetupRow>> dependents = new HashMap<>();
+
+    private final Map<SetupRow, Integer> waiting = new HashMap<>();
+
+    private final PriorityQueue<SetupRow> ready;
+
+    private int running = 0;
+
+    public RowGraph(List<SetupRow> ordered) {
+        for (int i = 0; i < ordered.size(); i++) {
+            ranks.put(ordered.get(i), i);
+            dependents.put(ordered.get(i), new ArrayList<SetupRow>());
+        }
+
+        ready = new PriorityQueue<>(Math.max(1, ordered.size()), new Comparator<SetupRow>() {
+            @Override
+            public int compare(SetupRow a, SetupRow b) {
+                return Integer.compare(ranks.get(a), ranks.get(b));
+            }
+        });
+
+        Map<String, SetupRow> references = references(ordered);
+
+        for (SetupRow row : ordered) {
+            List<SetupRow> dependencies = new ArrayList<>();
+
+            for (String reference : row.getDependsOn()) {
+                SetupRow dependency = references.get(reference);
+
+                if (dependency == null) {
+                    throw new RuntimeException(String.format("row %d depends on unknown row '%s'", row.getSheetRow(),
+                            reference));
+                }
+                if (!dependencies.contains(dependency)) {
+                    dependencies.add(dependency);
+                    dependents.get(dependency).add(row);
+                }
+            }
+
+            waiting.put(row, dependencies.size());
+        }
+
+        checkCycles(ordered);
+
+        for (SetupRow row : ordered) {
+            if (waiting.get(row) == 0) {
+                ready.add(row);
+            }
+        }
+    }
+
+    public static void checkSessionLocal(List<SetupRow> rows, int workers) {
+        if (workers <= 1) {
+            return;
+        }
+
+        for (SetupRow row : rows) {
+            if (row.createsTempTable()) {
+                throw new RuntimeException(String.format("row %d creates a TEMP table, which other workers' connections "
+                        + "cannot see; use a regular or UNLOGGED table, or QS_QUERY_WORKERS=1", row.getSheetRow()));
+            }
+        }
+    }
+
+    // every worker reads the exported snapshot, so nothing a row writes during the run is visible to the others
+    public static void checkSnapshot(List<SetupRow> rows, int workers) {
+        if (workers <= 1) {
+            return;
+        }
+
+        for (SetupRow row : rows) {
+            if (row.isStatement()) {
+                throw new RuntimeException(String.format("row %d is a statement, whose changes other workers' snapshot "
+                        + "cannot see; disable QS_CONSISTENT_SNAPSHOT or use QS_QUERY_WORKERS=1", row.getSheetRow()));
+            }
+            if (!row.getDependsOn().isEmpty()) {
+                throw new RuntimeException(String.format("row %d depends on other rows, whose changes its snapshot "
+                        + "cannot see; disable QS_CONSISTENT_SNAPSHOT or use QS_QUERY_WORKERS=1", row.getSheetRow()));
+            }
+        }
+    }
+
+    public synchronized SetupRow take() throws InterruptedException {
+        while (ready.isEmpty()) {
+            if (running == 0) {
+                return null;
+            }
+            wait();
+        }
+
+        running++;
+        return ready.poll();
+    }
+
+    public synchronized List<SetupRow> done(SetupRow row, boolean completed) {
+        List<SetupRow> skipped = new ArrayList<>();
+
+        if (completed) {
+            for (SetupRow dependent : dependents.get(row)) {
+                int count = waiting.get(dependent) - 1;
+                waiting.put(dependent, count);
+
+                if (count == 0) {
+                    ready.add(dependent);
+                }
+            }
+        } else {
+            skip(row, skipped);
+        }
+
+        running--;
+        notifyAll();
+        return skipped;
+    }
+
+    private void skip(SetupRow row, List<SetupRow> skipped) {
+        for (SetupRow dependent : dependents.get(row)) {
+            if (waiting.get(dependent) >= 0) {
+                waiting.put(dependent, -1);
+                skipped.add(dependent);
+                skip(dependent, skipped);
+            }
+        }
+    }
+
+    private Map<String, SetupRow> references(List<SetupRow> rows) {
+        Map<String, SetupRow> references = new HashMap<>();
+
+        for (SetupRow row : rows) {
+            references.put(String.valueOf(row.getSheetRow()), row);
+        }
+        for (SetupRow row : rows) {
+            if (row.getId() != null) {
+                references.put(row.getId(), row);
+            }
+        }
+
+        return references;
+    }
+
+    private void checkCycles(List<SetupRow> rows) {
+        Map<SetupRow, Integer> counts = new HashMap<>(waiting);
+        Deque<SetupRow> queue = new ArrayDeque<>();
+
+        for (SetupRow row : rows) {
+            if (counts.get(row) == 0) {
+                queue.add(row);
+            }
+        }
+
+        int visited = 0;
+        while (!queue.isEmpty()) {
+            SetupRow row = queue.poll();
+            visited++;
+
+            for (SetupRow dependent : dependents.get(row)) {
+                int count = counts.get(dependent) - 1;
+                counts.put(dependent, count);
+
+                if (count == 0) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        if (visited == rows.size()) {
+            return;
+        }
+
+        List<Integer> cyclic = new ArrayList<>();
+        for (SetupRow row : rows) {
+            if (counts.get(row) > 0) {
+                cyclic.add(row.getSheetRow());
+            }
+        }
+        throw new RuntimeException("dependency cycle between rows " + cyclic);
+    }
+}
@@ -0,0 +1,64 @@
+package querysheet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class RowScheduler {
+
+    private final DurationHistory durations;
+
+    private final boolean longestFirst;
+
+    public RowScheduler(DurationHistory durations, boolean longestFirst) {
+        this.durations = durations;
+        this.longestFirst = longestFirst;
+    }
+
+    public List<SetupRow> order(List<SetupRow> rows) {
+        final List<Long> estimates = new ArrayList<>();
+        for (SetupRow row : rows) {
+            estimates.add(durations.estimate(row));
+        }
+
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            positions.add(i);
+        }
+
+        final List<SetupRow> setup = rows;
+
+        Collections.sort(positions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int priority = Integer.compare(setup.get(b).getPriority(), setup.get(a).getPriority());
+                if (priority != 0) {
+                    return priority;
+                }
+
+                // with several workers, rows never measured go first so they get a duration, then longest processing
+                // time first; a single worker keeps sheet order
+                if (longestFirst) {
+                    int estimate = Long.compare(estimate(b), estimate(a));
+                    if (estimate != 0) {
+                        return estimate;
+                    }
+                }
+
+                return Integer.compare(a, b);
+            }
+
+            private long estimate(int position) {
+                Long estimate = estimates.get(position);
+                return estimate == null ? Long.MAX_VALUE : estimate;
+            }
+        });
+
+        List<SetupRow> ordered = new ArrayList<>();
+        for (int position : positions) {
+            ordered.add(rows.get(position));
+        }
+        return ordered;
+    }
+}
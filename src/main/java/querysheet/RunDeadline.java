@@ -0,0 +1,95 @@
+package querysheet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.db.DatabaseAPI;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class RunDeadline {
+
+    public static final long NONE = 0;
+
+    private static Logger logger = LoggerFactory.getLogger(RunDeadline.class);
+
+    private final long deadline;
+
+    private final Set<DatabaseAPI> running = Collections.newSetFromMap(new ConcurrentHashMap<DatabaseAPI, Boolean>());
+
+    private ScheduledExecutorService watchdog;
+
+    public RunDeadline(long budget) {
+        this.deadline = budget == NONE ? Long.MAX_VALUE : System.currentTimeMillis() + budget;
+    }
+
+    public void start() {
+        if (deadline == Long.MAX_VALUE) {
+            return;
+        }
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "run-deadline");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        watchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancelRunning();
+            }
+        }, remaining(), TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    public boolean fits(Long estimate) {
+        long now = System.currentTimeMillis();
+        return now < deadline && (estimate == null || estimate <= deadline - now);
+    }
+
+    public boolean passed() {
+        return System.currentTimeMillis() >= deadline;
+    }
+
+    public long remaining() {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    public void register(DatabaseAPI db) {
+        running.add(db);
+
+        if (passed()) {
+            db.cancel();
+        }
+    }
+
+    public void unregister(DatabaseAPI db) {
+        running.remove(db);
+    }
+
+    private void cancelRunning() {
+        logger.info(String.format("run deadline reached, cancelling %d running queries", running.size()));
+
+        for (DatabaseAPI db : running) {
+            try {
+                db.cancel();
+            } catch (RuntimeException e) {
+                logger.warn("could not cancel query: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package querysheet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+public class SetupCache {
+
+    private static Logger logger = LoggerFactory.getLogger(SetupCache.class);
+
+    private final File dir;
+
+    private final Gson gson = new Gson();
+
+    public SetupCache(File dir) {
+        this.dir = dir;
+    }
+
+    public List<Map<String, String>> get(String key, long modified) {
+        File file = file(key);
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                Entry entry = gson.fromJson(reader, Entry.class);
+                return entry != null && entry.modified == modified ? entry.rows : null;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn(String.format("ignoring unreadable setup cache: file=%s, error=%s", file, e.getMessage()));
+            return null;
+        }
+    }
+
+    public void put(String key, long modified, List<Map<String, String>> rows) {
+        Entry entry = new Entry();
+        entry.modified = modified;
+        entry.rows = rows;
+
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("could not create " + dir);
+            }
+
+            File tmp = File.createTempFile("setup", ".tmp", dir);
+            Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+            try {
+                gson.toJson(entry, writer);
+            } finally {
+                writer.close();
+            }
+
+            File file = file(key);
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    throw new IOException("could not replace " + file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn(String.format("could not write setup cache: key=%s, error=%s", key, e.getMessage()));
+        }
+    }
+
+    private File file(String key) {
+        return new File(dir, key.replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+    }
+
+    private static class Entry {
+
+        private long modified;
+
+        private List<Map<String, String>> rows;
+    }
+}
@@ -0,0 +1,207 @@
+package querysheet;
+
+import com.github.feroult.gapi.BatchOptions;
+import querysheet.utils.Setup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SetupRow {
+
+    public static final int AUTO_SHARD_ROWS = -1;
+
+    private static final Pattern SHARD_OPTION = Pattern.compile("SHARD(=(\\d+))?");
+
+    private static final String CSV_OPTION = "CSV";
+
+    private static final String SHEETS_OPTION = "SHEETS";
+
+    private static final String OUTBOX_OPTION = "OUTBOX";
+
+    private static final Pattern CHUNKED_OPTION = Pattern.compile("CHUNKED(=(\\d+))?");
+
+    private static final Pattern TEMP_TABLE = Pattern.compile("\\bCREATE\\s+((GLOBAL|LOCAL)\\s+)?TEMP(ORARY)?\\s+TABLE\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final int index;
+
+    private final Map<String, String> values;
+
+    public SetupRow(int index, Map<String, String> values) {
+        this.index = index;
+        this.values = values;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getSheetRow() {
+        return index + 2;
+    }
+
+    public String getId() {
+        return blankToNull(values.get("id"));
+    }
+
+    public List<String> getDependsOn() {
+        List<String> dependencies = new ArrayList<>();
+        String dependsOn = blankToNull(values.get("depends_on"));
+
+        if (dependsOn != null) {
+            for (String dependency : dependsOn.split(",")) {
+                if (!dependency.trim().isEmpty()) {
+                    dependencies.add(dependency.trim());
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    public boolean isStatement() {
+        return blankToNull(getSpreadsheet()) == null && blankToNull(getWorksheet()) == null && getPartition() == null;
+    }
+
+    public boolean createsTempTable() {
+        return isStatement() && getQuery() != null && TEMP_TABLE.matcher(getQuery()).find();
+    }
+
+    public String getQuery() {
+        return values.get("query");
+    }
+
+    public String getSpreadsheet() {
+        return values.get("spreadsheet");
+    }
+
+    public String getWorksheet() {
+        return values.get("worksheet");
+    }
+
+    public String getBatch() {
+        return values.get("batch");
+    }
+
+    public String getOptions() {
+        return values.get("options");
+    }
+
+    public String getParams() {
+        return blankToNull(values.get("params"));
+    }
+
+    public Object[] getBindValues() {
+        return QueryParams.parse(getParams(), new Date());
+    }
+
+    public String getDataSource() {
+        String dataSource = blankToNull(values.get("datasource"));
+        return dataSource == null ? Setup.DEFAULT_DATASOURCE : dataSource;
+    }
+
+    public String getPartition() {
+        return blankToNull(values.get("partition"));
+    }
+
+    public String getPartitionSpreadsheet() {
+        return blankToNull(values.get("partition_spreadsheet"));
+    }
+
+    public int getPriority() {
+        return intValue("priority", 0);
+    }
+
+    public int getTimeout() {
+        return intValue("timeout", Setup.getQueryTimeout());
+    }
+
+    public BatchOptions[] getBatchOptions() {
+        String optionsString = getOptions();
+
+        if (optionsString == null) {
+            return new BatchOptions[]{};
+        }
+
+        optionsString = optionsString.toUpperCase();
+
+        List<BatchOptions> options = new ArrayList<BatchOptions>();
+
+        if (optionsString.contains(BatchOptions.SHRINK.toString())) {
+            options.add(BatchOptions.SHRINK);
+        }
+
+        return options.toArray(new BatchOptions[]{});
+    }
+
+    public Integer getShardRows() {
+        return rowsOption(SHARD_OPTION, AUTO_SHARD_ROWS);
+    }
+
+    public Integer getChunkRows() {
+        return rowsOption(CHUNKED_OPTION, Setup.getChunkRows());
+    }
+
+    public boolean isCsvUpload() {
+        return hasOption(CSV_OPTION);
+    }
+
+    public boolean isSheetsUpload() {
+        return hasOption(SHEETS_OPTION);
+    }
+
+    public boolean isOutboxUpload() {
+        return hasOption(OUTBOX_OPTION);
+    }
+
+    private boolean hasOption(String option) {
+        String optionsString = getOptions();
+        return optionsString != null && optionsString.toUpperCase().contains(option);
+    }
+
+    private Integer rowsOption(Pattern option, int defaultRows) {
+        String optionsString = getOptions();
+
+        if (optionsString == null) {
+            return null;
+        }
+
+        Matcher matcher = option.matcher(optionsString.toUpperCase());
+
+        if (!matcher.find()) {
+            return null;
+        }
+
+        if (matcher.group(2) == null) {
+            return defaultRows;
+        }
+
+        int rows = Integer.parseInt(matcher.group(2));
+        if (rows <= 0) {
+            throw new RuntimeException("row count option must be positive: " + matcher.group());
+        }
+        return rows;
+    }
+
+    private int intValue(String column, int defaultValue) {
+        String value = blankToNull(values.get(column));
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+}
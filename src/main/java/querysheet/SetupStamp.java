@@ -0,0 +1,56 @@
+package querysheet;
+
+import com.google.api.services.drive.model.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.google.GoogleClients;
+
+public class SetupStamp {
+
+    private static Logger logger = LoggerFactory.getLogger(SetupStamp.class);
+
+    private final String key;
+
+    private Long expected;
+
+    public SetupStamp(String key, Long modified) {
+        this.key = key;
+        this.expected = modified;
+    }
+
+    // nobody else may have touched the spreadsheet since the last modified time we accounted for
+    public synchronized void beforeWrite() {
+        if (expected != null && !expected.equals(modified(false))) {
+            logger.info("setup spreadsheet changed during the run, not re-stamping the setup cache");
+            expected = null;
+        }
+    }
+
+    // our own write moved the modified time, follow it as long as we were the last to modify the file
+    public synchronized void afterWrite() {
+        if (expected != null) {
+            expected = modified(true);
+        }
+    }
+
+    public synchronized Long confirmed() {
+        beforeWrite();
+        return expected;
+    }
+
+    protected Long modified(boolean own) {
+        try {
+            File file = GoogleClients.drive().files().get(key).setFields("modifiedDate,modifiedByMeDate").execute();
+            long modified = file.getModifiedDate().getValue();
+
+            if (own && (file.getModifiedByMeDate() == null || file.getModifiedByMeDate().getValue() != modified)) {
+                logger.info("setup spreadsheet last modified by someone else, not re-stamping the setup cache");
+                return null;
+            }
+            return modified;
+        } catch (Exception e) {
+            logger.warn("could not read setup modified time: " + e.getMessage());
+            return null;
+        }
+    }
+}
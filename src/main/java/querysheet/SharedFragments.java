@@ -0,0 +1,173 @@
+package querysheet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.db.DatabaseAPI;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SharedFragments {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private static final Pattern REFERENCE = Pattern.compile("\\{\\{\\s*([A-Za-z_][A-Za-z0-9_]*)\\s*\\}\\}");
+
+    // marks the tables we materialized, so a leftover from an interrupted run is replaced instead of rejected
+    private static final String MARKER = "querysheet shared fragment";
+
+    private static Logger logger = LoggerFactory.getLogger(SharedFragments.class);
+
+    private final Map<String, String> queries = new LinkedHashMap<>();
+
+    private final Map<String, Set<String>> materialized = new LinkedHashMap<>();
+
+    public SharedFragments(List<Map<String, String>> rows) {
+        for (Map<String, String> row : rows) {
+            String name = row.get("name") == null ? "" : row.get("name").trim();
+            String query = row.get("query");
+
+            if (name.isEmpty() || query == null || query.trim().isEmpty()) {
+                continue;
+            }
+            if (!NAME.matcher(name).matches()) {
+                throw new RuntimeException("invalid shared fragment name: " + name);
+            }
+
+            queries.put(name.toLowerCase(), query);
+        }
+
+        for (String name : queries.keySet()) {
+            referencedBy(queries.get(name));
+        }
+    }
+
+    public boolean isEmpty() {
+        return queries.isEmpty();
+    }
+
+    public List<String> referencedBy(String query) {
+        List<String> names = new ArrayList<>();
+        resolve(query, names, new HashSet<String>());
+        return names;
+    }
+
+    public String expand(String query) {
+        if (query == null) {
+            return null;
+        }
+
+        Matcher matcher = REFERENCE.matcher(query);
+        StringBuffer expanded = new StringBuffer();
+
+        while (matcher.find()) {
+            matcher.appendReplacement(expanded, Matcher.quoteReplacement(table(name(matcher))));
+        }
+        matcher.appendTail(expanded);
+
+        return expanded.toString();
+    }
+
+    // once per run and data source, as a regular table every connection of the source can read
+    public synchronized void prepare(String source, DatabaseAPI db, String query, int timeout) {
+        Set<String> done = materialized.get(source);
+        if (done == null) {
+            done = new LinkedHashSet<>();
+            materialized.put(source, done);
+        }
+
+        for (String name : referencedBy(query)) {
+            if (done.contains(name)) {
+                continue;
+            }
+
+            long time = System.currentTimeMillis();
+            checkCollision(db, name, timeout);
+            db.exec(String.format("CREATE UNLOGGED TABLE %s AS %s", table(name), expand(queries.get(name))), timeout);
+            done.add(name);
+            db.exec(String.format("COMMENT ON TABLE %s IS '%s'", table(name), MARKER), timeout);
+            db.exec("ANALYZE " + table(name), timeout);
+
+            logger.info(String.format("materialized shared fragment %s in %d ms", name, System.currentTimeMillis() - time));
+        }
+    }
+
+    public synchronized Set<String> sources() {
+        return new LinkedHashSet<>(materialized.keySet());
+    }
+
+    public synchronized void drop(String source, DatabaseAPI db) {
+        Set<String> done = materialized.remove(source);
+        if (done == null) {
+            return;
+        }
+
+        List<String> names = new ArrayList<>(done);
+        for (int i = names.size() - 1; i >= 0; i--) {
+            db.exec("DROP TABLE IF EXISTS " + table(names.get(i)));
+        }
+    }
+
+    private void checkCollision(DatabaseAPI db, String name, int timeout) {
+        ResultSet rs = db.query("SELECT obj_description(c.oid, 'pg_class') FROM pg_class c "
+                + "WHERE c.relname = ? AND pg_table_is_visible(c.oid)", timeout, name).resultSet();
+
+        try {
+            if (!rs.next()) {
+                return;
+            }
+            if (!MARKER.equals(rs.getString(1))) {
+                throw new RuntimeException("shared fragment name collides with an existing relation: " + name);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        db.exec("DROP TABLE " + table(name), timeout);
+    }
+
+    private void resolve(String query, List<String> names, Set<String> visiting) {
+        if (query == null) {
+            return;
+        }
+
+        Matcher matcher = REFERENCE.matcher(query);
+
+        while (matcher.find()) {
+            String name = name(matcher);
+
+            if (names.contains(name)) {
+                continue;
+            }
+            if (!visiting.add(name)) {
+                throw new RuntimeException("shared fragment references itself: " + name);
+            }
+
+            resolve(queries.get(name), names, visiting);
+            visiting.remove(name);
+            names.add(name);
+        }
+    }
+
+    private String name(Matcher matcher) {
+        String name = matcher.group(1).toLowerCase();
+
+        if (!queries.containsKey(name)) {
+            throw new RuntimeException("unknown shared fragment: " + name);
+        }
+        return name;
+    }
+
+    private String table(String name) {
+        return "\"" + name + "\"";
+    }
+}
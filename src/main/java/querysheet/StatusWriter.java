@@ -0,0 +1,187 @@
+package querysheet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.upload.SheetsRangeWriter;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StatusWriter {
+
+    private static final int HEADER_ROW = 1;
+
+    static final int STATUS_COLUMN = 1;
+
+    private static final int ERROR_LENGTH = 200;
+
+    private static final String[] EXTRA_COLUMNS = {"elapsed_ms", "rows", "error"};
+
+    private static Logger logger = LoggerFactory.getLogger(StatusWriter.class);
+
+    private final SheetsRangeWriter writer;
+
+    private final String key;
+
+    private final String worksheet;
+
+    private final long flushInterval;
+
+    private Map<Integer, String[]> pending = new LinkedHashMap<>();
+
+    private int[] extraColumns;
+
+    private Map<Integer, String> newHeaders = new LinkedHashMap<>();
+
+    private long lastFlush = System.currentTimeMillis();
+
+    private SetupStamp stamp;
+
+    public StatusWriter(SheetsRangeWriter writer, String key, String worksheet, long flushInterval) {
+        this.writer = writer;
+        this.key = key;
+        this.worksheet = worksheet;
+        this.flushInterval = flushInterval;
+    }
+
+    public synchronized void setStamp(SetupStamp stamp) {
+        this.stamp = stamp;
+    }
+
+    public synchronized void success(SetupRow setup, Date start, long elapsed, int rows) {
+        add(setup, "Success - " + format(start), String.valueOf(elapsed), String.valueOf(rows), "");
+    }
+
+    public synchronized void queued(SetupRow setup, Date start, long elapsed, int rows) {
+        add(setup, "Queued  - " + format(start), String.valueOf(elapsed), String.valueOf(rows), "");
+    }
+
+    public synchronized void error(SetupRow setup, Date start, long elapsed, Exception e) {
+        add(setup, "Error       - " + format(start), String.valueOf(elapsed), "", summary(e));
+    }
+
+    public synchronized void deferred(SetupRow setup, Date start, String reason) {
+        add(setup, "Deferred - " + format(start), "", "", reason);
+    }
+
+    public synchronized void skipped(SetupRow setup, Date start, String reason) {
+        add(setup, "Skipped  - " + format(start), "", "", reason);
+    }
+
+    public synchronized void flushIfDue() {
+        if (System.currentTimeMillis() - lastFlush >= flushInterval) {
+            flush();
+        }
+    }
+
+    public synchronized void flush() {
+        lastFlush = System.currentTimeMillis();
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        if (stamp != null) {
+            stamp.beforeWrite();
+        }
+
+        try {
+            write(pending);
+            logger.info(String.format("flushed %d status rows to %s", pending.size(), worksheet));
+            pending = new LinkedHashMap<>();
+        } catch (RuntimeException e) {
+            logger.warn(String.format("could not flush %d status rows, keeping them for the next flush: %s",
+                    pending.size(), e.getMessage()));
+        } finally {
+            if (stamp != null) {
+                stamp.afterWrite();
+            }
+        }
+    }
+
+    protected void write(Map<Integer, String[]> rows) {
+        int[] columns = extraColumns();
+        Map<String, List<String[]>> ranges = new LinkedHashMap<>();
+
+        for (Map.Entry<Integer, String> header : newHeaders.entrySet()) {
+            put(ranges, HEADER_ROW, header.getKey(), header.getValue());
+        }
+
+        for (Map.Entry<Integer, String[]> row : rows.entrySet()) {
+            String[] values = row.getValue();
+
+            put(ranges, row.getKey(), STATUS_COLUMN, values[0]);
+            for (int i = 1; i < values.length; i++) {
+                put(ranges, row.getKey(), columns[i - 1], values[i]);
+            }
+        }
+
+        writer.writeRanges(key, ranges);
+        newHeaders.clear();
+    }
+
+    private void add(SetupRow setup, String status, String... extras) {
+        String[] values = new String[extras.length + 1];
+        values[0] = status;
+        System.arraycopy(extras, 0, values, 1, extras.length);
+
+        pending.put(setup.getSheetRow(), values);
+    }
+
+    private int[] extraColumns() {
+        if (extraColumns != null) {
+            return extraColumns;
+        }
+
+        List<String> header = new ArrayList<>(writer.readRow(key, worksheet, HEADER_ROW));
+        int[] columns = new int[EXTRA_COLUMNS.length];
+
+        for (int i = 0; i < EXTRA_COLUMNS.length; i++) {
+            int index = indexOf(header, EXTRA_COLUMNS[i]);
+
+            if (index < 0) {
+                header.add(EXTRA_COLUMNS[i]);
+                index = header.size() - 1;
+                newHeaders.put(index + 1, EXTRA_COLUMNS[i]);
+            }
+
+            columns[i] = index + 1;
+        }
+
+        extraColumns = columns;
+        return columns;
+    }
+
+    private int indexOf(List<String> header, String name) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void put(Map<String, List<String[]>> ranges, int row, int column, String value) {
+        String range = String.format("'%s'!%s%d", worksheet.replace("'", "''"), SheetsRangeWriter.columnName(column), row);
+        List<String[]> values = new ArrayList<>();
+        values.add(new String[]{value});
+        ranges.put(range, values);
+    }
+
+    private String summary(Exception e) {
+        String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        message = message.replaceAll("\\s+", " ").trim();
+        if (message.length() > ERROR_LENGTH) {
+            message = message.substring(0, ERROR_LENGTH);
+        }
+        return message.matches("^[=+\\-@].*") ? "'" + message : message;
+    }
+
+    private String format(Date date) {
+        return new SimpleDateFormat("dd/MM/yyyy HH:mm").format(date);
+    }
+}
@@ -0,0 +1,11 @@
+package querysheet.batch;
+
+public interface CellSink {
+
+    void startRow(int row);
+
+    // value is only valid during the call, batches reuse the buffer behind it
+    void cell(int column, CharSequence value);
+
+    void endRow(int row);
+}
@@ -0,0 +1,68 @@
+package querysheet.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public class CsvCellSink implements CellSink {
+
+    private static final char SEPARATOR = ',';
+
+    private static final char QUOTE = '"';
+
+    private static final String LINE_END = "\r\n";
+
+    private final Writer writer;
+
+    public CsvCellSink(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void startRow(int row) {
+    }
+
+    @Override
+    public void cell(int column, CharSequence value) {
+        try {
+            if (column > 1) {
+                writer.write(SEPARATOR);
+            }
+
+            if (!needsQuotes(value)) {
+                writer.append(value);
+                return;
+            }
+
+            writer.write(QUOTE);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == QUOTE) {
+                    writer.write(QUOTE);
+                }
+                writer.write(c);
+            }
+            writer.write(QUOTE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void endRow(int row) {
+        try {
+            writer.write(LINE_END);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean needsQuotes(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
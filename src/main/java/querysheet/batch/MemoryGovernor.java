@@ -0,0 +1,186 @@
+package querysheet.batch;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import querysheet.utils.Setup;
+
+public class MemoryGovernor {
+
+    private static final int ROW_OVERHEAD = 16;
+
+    private static final int REFERENCE_BYTES = 4;
+
+    private static final int STRING_OVERHEAD = 40;
+
+    private static final int MAX_ESTIMATED_CHARS = 64;
+
+    private static final MemoryGovernor instance = new MemoryGovernor(Setup.getMemoryBudget(), Setup.getMemoryWait());
+
+    private final long budget;
+
+    private final long maxWait;
+
+    private long reserved = 0;
+
+    private long peak = 0;
+
+    private long opened = 0;
+
+    private MemoryReservation waitingHolder;
+
+    public MemoryGovernor(long budget, long maxWait) {
+        this.budget = budget;
+        this.maxWait = maxWait;
+    }
+
+    public static MemoryGovernor getInstance() {
+        return instance;
+    }
+
+    public synchronized MemoryReservation open() {
+        return new MemoryReservation(this, ++opened);
+    }
+
+    public long budget() {
+        return budget;
+    }
+
+    public synchronized long reserved() {
+        return reserved;
+    }
+
+    public synchronized long peak() {
+        return peak;
+    }
+
+    synchronized boolean tryAcquire(MemoryReservation reservation, long bytes) {
+        if (!fits(reservation, bytes) || !mayProceed(reservation)) {
+            return false;
+        }
+
+        acquire(bytes);
+        return true;
+    }
+
+    synchronized void acquireOrWait(MemoryReservation reservation, long bytes) {
+        long deadline = System.currentTimeMillis() + maxWait;
+
+        try {
+            while (!fits(reservation, bytes) || (reservation.bytes() == 0 && !mayProceed(reservation))) {
+                // holders waiting on each other can deadlock, so only the oldest of them waits and newer ones fail
+                if (reservation.bytes() > 0 && !waitAsHolder(reservation)) {
+                    throw new RuntimeException(String.format(
+                            "memory budget exhausted while an older reservation waits: holding=%d, reserved=%d, "
+                                    + "requested=%d, budget=%d", reservation.bytes(), reserved, bytes, budget));
+                }
+
+                long wait = deadline - System.currentTimeMillis();
+
+                if (wait <= 0) {
+                    throw new RuntimeException(String.format("memory budget exhausted: reserved=%d, requested=%d, budget=%d",
+                            reserved, bytes, budget));
+                }
+
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+
+            acquire(bytes);
+        } finally {
+            if (waitingHolder == reservation) {
+                waitingHolder = null;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean waitAsHolder(MemoryReservation reservation) {
+        if (waitingHolder == null || waitingHolder == reservation || reservation.isOlderThan(waitingHolder)) {
+            waitingHolder = reservation;
+            notifyAll();
+            return true;
+        }
+        return false;
+    }
+
+    // freed bytes go to the waiting holder first: spilling batches and new reservations stand back
+    private boolean mayProceed(MemoryReservation reservation) {
+        return waitingHolder == null || waitingHolder == reservation;
+    }
+
+    synchronized void release(long bytes) {
+        reserved -= bytes;
+        notifyAll();
+    }
+
+    private boolean fits(MemoryReservation reservation, long bytes) {
+        // a reservation that is alone in the governor has nobody to wait for
+        return reserved + bytes <= budget || reserved == reservation.bytes();
+    }
+
+    private void acquire(long bytes) {
+        reserved += bytes;
+        peak = Math.max(peak, reserved);
+    }
+
+    public static long estimateRowBytes(ResultSetMetaData metaData) throws SQLException {
+        long bytes = ROW_OVERHEAD;
+
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            bytes += REFERENCE_BYTES + estimateColumnBytes(metaData, i);
+        }
+
+        return bytes;
+    }
+
+    public static long estimateRowBytes(String[] row) {
+        long bytes = ROW_OVERHEAD;
+
+        for (String value : row) {
+            bytes += REFERENCE_BYTES + STRING_OVERHEAD + 2 * (value == null ? 0 : value.length());
+        }
+
+        return bytes;
+    }
+
+    private static long estimateColumnBytes(ResultSetMetaData metaData, int column) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+        case Types.BIT:
+        case Types.BOOLEAN:
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.REAL:
+            return 16;
+        case Types.BIGINT:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+        case Types.DATE:
+        case Types.TIME:
+            return 24;
+        case Types.TIMESTAMP:
+            return 32;
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            return 64;
+        default:
+            return STRING_OVERHEAD + 2 * estimateChars(metaData, column);
+        }
+    }
+
+    private static int estimateChars(ResultSetMetaData metaData, int column) throws SQLException {
+        int size = metaData.getColumnDisplaySize(column);
+
+        if (size <= 0 || size > MAX_ESTIMATED_CHARS) {
+            return MAX_ESTIMATED_CHARS;
+        }
+
+        return size;
+    }
+}
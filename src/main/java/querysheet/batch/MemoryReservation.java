@@ -0,0 +1,76 @@
+package querysheet.batch;
+
+import java.io.Closeable;
+
+public class MemoryReservation implements Closeable {
+
+    private static final long CHUNK_BYTES = 1024 * 1024;
+
+    private final MemoryGovernor governor;
+
+    private final long sequence;
+
+    private long bytes = 0;
+
+    private long used = 0;
+
+    MemoryReservation(MemoryGovernor governor, long sequence) {
+        this.governor = governor;
+        this.sequence = sequence;
+    }
+
+    public boolean tryReserve(long size) {
+        if (used + size <= bytes) {
+            used += size;
+            return true;
+        }
+
+        long chunk = chunk(size);
+
+        if (!governor.tryAcquire(this, chunk)) {
+            return false;
+        }
+
+        grow(chunk, size);
+        return true;
+    }
+
+    public void reserve(long size) {
+        if (used + size <= bytes) {
+            used += size;
+            return;
+        }
+
+        long chunk = chunk(size);
+        governor.acquireOrWait(this, chunk);
+        grow(chunk, size);
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    boolean isOlderThan(MemoryReservation other) {
+        return sequence < other.sequence;
+    }
+
+    @Override
+    public void close() {
+        if (bytes == 0) {
+            return;
+        }
+
+        governor.release(bytes);
+        bytes = 0;
+        used = 0;
+    }
+
+    private long chunk(long size) {
+        return Math.max(CHUNK_BYTES, used + size - bytes);
+    }
+
+    private void grow(long chunk, long size) {
+        bytes += chunk;
+        used += size;
+    }
+}
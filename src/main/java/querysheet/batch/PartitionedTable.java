@@ -0,0 +1,111 @@
+package querysheet.batch;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class PartitionedTable implements Closeable {
+
+    private static final String NULL_PARTITION = "null";
+
+    private final Class<? extends TableToSpreadsheetBatch> batchClass;
+
+    private final String partitionColumn;
+
+    private final String spreadsheetColumn;
+
+    private Map<String, TableToSpreadsheetBatch> batches = new TreeMap<>();
+
+    private Map<String, String> spreadsheets = new HashMap<>();
+
+    public PartitionedTable(Class<? extends TableToSpreadsheetBatch> batchClass, String partitionColumn,
+                            String spreadsheetColumn) {
+        this.batchClass = batchClass;
+        this.partitionColumn = partitionColumn;
+        this.spreadsheetColumn = spreadsheetColumn;
+    }
+
+    public void load(ResultSet rs) {
+        try {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int cols = metaData.getColumnCount();
+            int partitionIndex = columnIndex(metaData, partitionColumn);
+            int spreadsheetIndex = spreadsheetColumn == null ? -1 : columnIndex(metaData, spreadsheetColumn);
+
+            while (rs.next()) {
+                Object[] row = new Object[cols];
+
+                for (int i = 0; i < cols; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+
+                String partition = toKey(row[partitionIndex]);
+                TableToSpreadsheetBatch batch = batches.get(partition);
+
+                if (batch == null) {
+                    batch = createBatch(metaData);
+                    batches.put(partition, batch);
+
+                    if (spreadsheetIndex >= 0) {
+                        spreadsheets.put(partition, toKey(row[spreadsheetIndex]));
+                    }
+                }
+
+                batch.addRow(row);
+            }
+
+            for (TableToSpreadsheetBatch batch : batches.values()) {
+                batch.freeze();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Set<String> partitions() {
+        return batches.keySet();
+    }
+
+    public TableToSpreadsheetBatch getBatch(String partition) {
+        return batches.get(partition);
+    }
+
+    public String getSpreadsheet(String partition) {
+        return spreadsheets.get(partition);
+    }
+
+    @Override
+    public void close() {
+        for (TableToSpreadsheetBatch batch : batches.values()) {
+            batch.close();
+        }
+    }
+
+    private TableToSpreadsheetBatch createBatch(ResultSetMetaData metaData) throws SQLException {
+        try {
+            TableToSpreadsheetBatch batch = batchClass.newInstance();
+            batch.loadHeaders(metaData);
+            return batch;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int columnIndex(ResultSetMetaData metaData, String label) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnLabel(i).equalsIgnoreCase(label)) {
+                return i - 1;
+            }
+        }
+        throw new RuntimeException("partition column not found: " + label);
+    }
+
+    private String toKey(Object value) {
+        return value == null ? NULL_PARTITION : value.toString();
+    }
+}
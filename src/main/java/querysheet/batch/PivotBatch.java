@@ -0,0 +1,205 @@
+package querysheet.batch;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PivotBatch extends ResultSetToSpreadsheetBatch {
+
+    private static final int HEADER_ROW = 1;
+
+    private static final int ROW_KEY_COLUMN = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final String NULL_KEY = "null";
+
+    private String rowKeyColumn;
+
+    private String columnKeyColumn;
+
+    private String valueColumn;
+
+    private String rowKeyHeader;
+
+    private Map<String, Integer> rowIndex = new HashMap<>();
+
+    private Map<String, Integer> columnIndex = new HashMap<>();
+
+    private List<String> rowKeys = new ArrayList<>();
+
+    private List<String> columnKeys = new ArrayList<>();
+
+    private double[][] matrix = new double[INITIAL_CAPACITY][];
+
+    private int columnCapacity = INITIAL_CAPACITY;
+
+    private int[] rowOrder;
+
+    private int[] columnOrder;
+
+    public PivotBatch() {
+        this(null, null, null);
+    }
+
+    public PivotBatch(String rowKeyColumn, String columnKeyColumn, String valueColumn) {
+        this.rowKeyColumn = rowKeyColumn;
+        this.columnKeyColumn = columnKeyColumn;
+        this.valueColumn = valueColumn;
+    }
+
+    @Override
+    public void load(ResultSet rs) {
+        try {
+            rowKeyHeader = loadRowKeyHeader(rs);
+
+            while (rs.next()) {
+                int row = addRowKey(getKey(rs, rowKeyColumn, 1));
+                int column = addColumnKey(getKey(rs, columnKeyColumn, 2));
+                double value = getValue(rs);
+
+                if (!rs.wasNull()) {
+                    add(row, column, value);
+                }
+            }
+
+            rowOrder = sortedOrder(rowKeys);
+            columnOrder = sortedOrder(columnKeys);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int rows() {
+        return rowKeys.size() + 1;
+    }
+
+    @Override
+    public int cols() {
+        return columnKeys.size() + 1;
+    }
+
+    @Override
+    public String getValue(int row, int column) {
+        if (row == HEADER_ROW) {
+            return getHeader(column);
+        }
+
+        int rowKey = rowOrder[row - 2];
+
+        if (column == ROW_KEY_COLUMN) {
+            return rowKeys.get(rowKey);
+        }
+
+        double value = matrix[rowKey][columnOrder[column - 2]];
+        return Double.isNaN(value) ? "" : formatString(value);
+    }
+
+    private String getHeader(int column) {
+        if (column == ROW_KEY_COLUMN) {
+            return rowKeyHeader;
+        }
+        return columnKeys.get(columnOrder[column - 2]);
+    }
+
+    private String loadRowKeyHeader(ResultSet rs) throws SQLException {
+        if (rowKeyColumn != null) {
+            return rowKeyColumn;
+        }
+        return rs.getMetaData().getColumnLabel(1);
+    }
+
+    private String getKey(ResultSet rs, String label, int position) throws SQLException {
+        String key = label == null ? rs.getString(position) : rs.getString(label);
+        return key == null ? NULL_KEY : key;
+    }
+
+    private double getValue(ResultSet rs) throws SQLException {
+        return valueColumn == null ? rs.getDouble(3) : rs.getDouble(valueColumn);
+    }
+
+    private void add(int row, int column, double value) {
+        double current = matrix[row][column];
+        matrix[row][column] = Double.isNaN(current) ? value : current + value;
+    }
+
+    private int addRowKey(String key) {
+        Integer index = rowIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        index = rowKeys.size();
+        rowKeys.add(key);
+        rowIndex.put(key, index);
+
+        if (index == matrix.length) {
+            matrix = Arrays.copyOf(matrix, matrix.length * 2);
+        }
+        matrix[index] = emptyCells(columnCapacity);
+
+        return index;
+    }
+
+    private int addColumnKey(String key) {
+        Integer index = columnIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        index = columnKeys.size();
+        columnKeys.add(key);
+        columnIndex.put(key, index);
+
+        if (index == columnCapacity) {
+            growColumns();
+        }
+
+        return index;
+    }
+
+    private void growColumns() {
+        int capacity = columnCapacity * 2;
+
+        for (int i = 0; i < rowKeys.size(); i++) {
+            double[] cells = emptyCells(capacity);
+            System.arraycopy(matrix[i], 0, cells, 0, columnCapacity);
+            matrix[i] = cells;
+        }
+
+        columnCapacity = capacity;
+    }
+
+    private double[] emptyCells(int capacity) {
+        double[] cells = new double[capacity];
+        Arrays.fill(cells, Double.NaN);
+        return cells;
+    }
+
+    private int[] sortedOrder(final List<String> keys) {
+        List<Integer> indexes = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            indexes.add(i);
+        }
+
+        Collections.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return keys.get(a).compareTo(keys.get(b));
+            }
+        });
+
+        int[] order = new int[indexes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = indexes.get(i);
+        }
+        return order;
+    }
+}
@@ -3,27 +3,81 @@ package querysheet.batch;
 
 import com.github.feroult.gapi.spreadsheet.SpreadsheetBatch;
 
+import java.io.Closeable;
 import java.sql.ResultSet;
 import java.text.DecimalFormat;
+import java.text.FieldPosition;
 import java.text.NumberFormat;
 import java.util.Locale;
 
-public abstract class ResultSetToSpreadsheetBatch implements SpreadsheetBatch {
+public abstract class ResultSetToSpreadsheetBatch implements SpreadsheetBatch, Closeable {
+
+    private static final ThreadLocal<DecimalFormat> decimalFormat = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            Locale locale = new Locale("pt", "BR");
+            String pattern = "###.##";
+
+            DecimalFormat decimalFormat = (DecimalFormat)
+                    NumberFormat.getNumberInstance(locale);
+            decimalFormat.applyPattern(pattern);
+
+            return decimalFormat;
+        }
+    };
+
+    private MemoryReservation reservation = MemoryGovernor.getInstance().open();
 
     public abstract void load(ResultSet rs);
 
+    public void stream(CellSink sink) {
+        for (int row = 1; row <= rows(); row++) {
+            sink.startRow(row);
+            for (int column = 1; column <= cols(); column++) {
+                sink.cell(column, getValue(row, column));
+            }
+            sink.endRow(row);
+        }
+    }
+
+    public String[][] getRange(int firstRow, int lastRow) {
+        int cols = cols();
+        String[][] range = new String[lastRow - firstRow + 1][];
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            String[] values = new String[cols];
+            for (int column = 1; column <= cols; column++) {
+                values[column - 1] = getValue(row, column);
+            }
+            range[row - firstRow] = values;
+        }
+
+        return range;
+    }
+
+    protected MemoryReservation reservation() {
+        return reservation;
+    }
+
+    @Override
+    public void close() {
+        reservation.close();
+    }
+
     protected String formatString(Object value) {
         if (!Number.class.isInstance(value)) {
             return value.toString();
         }
 
-        Locale locale = new Locale("pt", "BR");
-        String pattern = "###.##";
+        return decimalFormat.get().format(value);
+    }
 
-        DecimalFormat decimalFormat = (DecimalFormat)
-                NumberFormat.getNumberInstance(locale);
-        decimalFormat.applyPattern(pattern);
+    protected void formatTo(Object value, StringBuffer buffer) {
+        if (!Number.class.isInstance(value)) {
+            buffer.append(value.toString());
+            return;
+        }
 
-        return decimalFormat.format(value);
+        decimalFormat.get().format(value, buffer, new FieldPosition(0));
     }
 }
@@ -0,0 +1,344 @@
+package querysheet.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public class RowStore implements Closeable {
+
+    private static final int BLOCK_ROWS = 1024;
+
+    private static final int CACHED_BLOCKS = 8;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_DECIMAL = 4;
+
+    private final long memoryBudget;
+
+    private long memoryBytes = 0;
+
+    private List<Object[]> memoryRows = new ArrayList<>();
+
+    private List<Object[]> pendingRows = new ArrayList<>();
+
+    private int spilledRows = 0;
+
+    private boolean spilling = false;
+
+    private File file;
+
+    private FileChannel channel;
+
+    private long[] blockOffsets = new long[16];
+
+    private int[] blockLengths = new int[16];
+
+    private int blocks = 0;
+
+    private boolean frozen = false;
+
+    private Object[][] frozenRows;
+
+    private MappedByteBuffer frozenFile;
+
+    private AtomicReferenceArray<CachedBlock> cachedBlocks = new AtomicReferenceArray<>(CACHED_BLOCKS);
+
+    public RowStore(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public void add(Object[] row) {
+        if (frozen) {
+            throw new IllegalStateException("row store is frozen");
+        }
+
+        if (!spilling) {
+            long bytes = estimateBytes(row);
+
+            if (memoryBytes + bytes <= memoryBudget) {
+                memoryBytes += bytes;
+                memoryRows.add(row);
+                return;
+            }
+
+            spill();
+        }
+
+        pendingRows.add(row);
+
+        if (pendingRows.size() == BLOCK_ROWS) {
+            flushPendingRows();
+        }
+    }
+
+    public Object[] get(int index) {
+        if (frozen && index < frozenRows.length) {
+            return frozenRows[index];
+        }
+
+        if (!frozen && index < memoryRows.size()) {
+            return memoryRows.get(index);
+        }
+
+        int spilledIndex = index - memoryRowCount();
+        int block = spilledIndex / BLOCK_ROWS;
+
+        if (block == blocks) {
+            return pendingRows.get(spilledIndex % BLOCK_ROWS);
+        }
+
+        return readBlock(block)[spilledIndex % BLOCK_ROWS];
+    }
+
+    public int size() {
+        return memoryRowCount() + spilledRows + pendingRows.size();
+    }
+
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+
+        try {
+            if (!pendingRows.isEmpty()) {
+                flushPendingRows();
+            }
+
+            if (channel != null && channel.size() <= Integer.MAX_VALUE) {
+                frozenFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            frozenRows = memoryRows.toArray(new Object[memoryRows.size()][]);
+            memoryRows = null;
+            frozen = true;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private int memoryRowCount() {
+        return frozen ? frozenRows.length : memoryRows.size();
+    }
+
+    public void spill() {
+        spilling = true;
+    }
+
+    public boolean isSpilling() {
+        return spilling;
+    }
+
+    public long memoryBytes() {
+        return memoryBytes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+            frozenFile = null;
+            cachedBlocks = new AtomicReferenceArray<>(CACHED_BLOCKS);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected long estimateBytes(Object[] row) {
+        long bytes = 16 + 4 * row.length;
+
+        for (Object value : row) {
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof String) {
+                bytes += 40 + 2 * ((String) value).length();
+            } else if (value instanceof BigDecimal) {
+                bytes += 48;
+            } else {
+                bytes += 24;
+            }
+        }
+
+        return bytes;
+    }
+
+    private void flushPendingRows() {
+        try {
+            byte[] block = compress(pendingRows);
+
+            if (channel == null) {
+                openFile();
+            }
+
+            if (blocks == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+                blockLengths = Arrays.copyOf(blockLengths, blocks * 2);
+            }
+
+            long offset = channel.size();
+            channel.write(ByteBuffer.wrap(block), offset);
+
+            blockOffsets[blocks] = offset;
+            blockLengths[blocks] = block.length;
+            blocks++;
+
+            spilledRows += pendingRows.size();
+            pendingRows = new ArrayList<>();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void openFile() throws IOException {
+        file = File.createTempFile("querysheet-rows", ".bin");
+        file.deleteOnExit();
+        channel = new RandomAccessFile(file, "rw").getChannel();
+    }
+
+    private Object[][] readBlock(int block) {
+        int slot = block % CACHED_BLOCKS;
+        CachedBlock cached = cachedBlocks.get(slot);
+
+        if (cached != null && cached.index == block) {
+            return cached.rows;
+        }
+
+        try {
+            byte[] bytes = new byte[blockLengths[block]];
+            mapBlock(block).get(bytes);
+
+            cached = new CachedBlock(block, decompress(bytes));
+            cachedBlocks.set(slot, cached);
+            return cached.rows;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ByteBuffer mapBlock(int block) throws IOException {
+        if (frozenFile == null) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[block], blockLengths[block]);
+        }
+
+        ByteBuffer buffer = frozenFile.duplicate();
+        buffer.position((int) blockOffsets[block]);
+        return buffer;
+    }
+
+    private byte[] compress(List<Object[]> rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+
+        out.writeInt(rows.size());
+        for (Object[] row : rows) {
+            out.writeInt(row.length);
+            for (Object value : row) {
+                writeValue(out, value);
+            }
+        }
+
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private Object[][] decompress(byte[] block) throws IOException {
+        DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(block)));
+
+        Object[][] rows = new Object[in.readInt()][];
+        for (int i = 0; i < rows.length; i++) {
+            Object[] row = new Object[in.readInt()];
+            for (int j = 0; j < row.length; j++) {
+                row[j] = readValue(in);
+            }
+            rows[i] = row;
+        }
+
+        in.close();
+        return rows;
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            out.writeByte(TYPE_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeByte(TYPE_STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_DECIMAL:
+            return new BigDecimal(in.readUTF());
+        case TYPE_DOUBLE:
+            return in.readDouble();
+        case TYPE_LONG:
+            return in.readLong();
+        default:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+    }
+
+    private static class CachedBlock {
+
+        private final int index;
+
+        private final Object[][] rows;
+
+        private CachedBlock(int index, Object[][] rows) {
+            this.index = index;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package querysheet.batch;
+
+import com.github.feroult.gapi.spreadsheet.SpreadsheetBatch;
+
+public class ShardBatch implements SpreadsheetBatch {
+
+    private static final int HEADER_ROW = 1;
+
+    private final SpreadsheetBatch batch;
+
+    private final int firstRow;
+
+    private final int rows;
+
+    public ShardBatch(SpreadsheetBatch batch, int firstRow, int rows) {
+        this.batch = batch;
+        this.firstRow = firstRow;
+        this.rows = rows;
+    }
+
+    @Override
+    public int rows() {
+        return rows + 1;
+    }
+
+    @Override
+    public int cols() {
+        return batch.cols();
+    }
+
+    @Override
+    public String getValue(int row, int column) {
+        if (row == HEADER_ROW) {
+            return batch.getValue(HEADER_ROW, column);
+        }
+        return batch.getValue(firstRow + row - 2, column);
+    }
+
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    public int getLastRow() {
+        return firstRow + rows - 1;
+    }
+}
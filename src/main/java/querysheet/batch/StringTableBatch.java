@@ -0,0 +1,27 @@
+package querysheet.batch;
+
+import com.github.feroult.gapi.spreadsheet.SpreadsheetBatch;
+
+public class StringTableBatch implements SpreadsheetBatch {
+
+    private String[][] table;
+
+    public StringTableBatch(String[][] table) {
+        this.table = table;
+    }
+
+    @Override
+    public int rows() {
+        return table.length;
+    }
+
+    @Override
+    public int cols() {
+        return table[0].length;
+    }
+
+    @Override
+    public String getValue(int row, int column) {
+        return table[row - 1][column - 1];
+    }
+}
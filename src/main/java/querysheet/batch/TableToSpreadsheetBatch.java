@@ -3,31 +3,55 @@ package querysheet.batch;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+
+import querysheet.utils.Setup;
 
 public class TableToSpreadsheetBatch extends ResultSetToSpreadsheetBatch {	
 
 	public void load(ResultSet rs) {
 		try {
-			loadHeaders(rs);
+			loadHeaders(rs.getMetaData());
 			loadRows(rs);
+			freeze();
 		} catch(Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
 
 	private int cols = 0;
+
+	private long rowBytes = 0;
 	
-	List<Object[]> rows = new ArrayList<Object[]>();
+	private final RowStore rows;
+
+	public TableToSpreadsheetBatch() {
+		this(Setup.getRowStoreMemory());
+	}
+
+	protected TableToSpreadsheetBatch(long rowStoreMemory) {
+		rows = new RowStore(rowStoreMemory);
+	}
 	
-	private void addRow(Object[] row) {
+	void addRow(Object[] row) {
 		if(cols == 0) {
 			cols = row.length; 
 		}
+		if(!rows.isSpilling() && !reservation().tryReserve(rowBytes)) {
+			rows.spill();
+		}
 		rows.add(row);
 	}
 
+	// rows decoded from elsewhere, reserved at their actual size so large ones spill like query results
+	public void addStrings(String[] row) {
+		rowBytes = MemoryGovernor.estimateRowBytes(row);
+		addRow(row);
+	}
+
+	public void freeze() {
+		rows.freeze();
+	}
+
 	@Override
 	public int rows() {
 		return rows.size();
@@ -44,8 +68,52 @@ public class TableToSpreadsheetBatch extends ResultSetToSpreadsheetBatch {
 		return value == null ? "null" : formatString(value);
 	}
 
-	private void loadHeaders(ResultSet rs) throws SQLException {
-		ResultSetMetaData metaData = rs.getMetaData();
+	@Override
+	public void stream(CellSink sink) {
+		if(overridesGetValue()) {
+			super.stream(sink);
+			return;
+		}
+
+		StringBuffer buffer = new StringBuffer();
+
+		for(int row = 1; row <= rows(); row++) {
+			Object[] values = rows.get(row-1);
+			sink.startRow(row);
+
+			for(int column = 1; column <= cols; column++) {
+				Object value = values[column-1];
+				buffer.setLength(0);
+
+				if(value == null) {
+					buffer.append("null");
+				} else {
+					formatTo(value, buffer);
+				}
+
+				sink.cell(column, buffer);
+			}
+
+			sink.endRow(row);
+		}
+	}
+
+	private boolean overridesGetValue() {
+		try {
+			return getClass().getMethod("getValue", int.class, int.class).getDeclaringClass() != TableToSpreadsheetBatch.class;
+		} catch(NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		rows.close();
+		super.close();
+	}
+
+	void loadHeaders(ResultSetMetaData metaData) throws SQLException {
+		rowBytes = MemoryGovernor.estimateRowBytes(metaData);
 		Object[] cols = new Object[metaData.getColumnCount()];
 		
 		for(int i = 0; i < metaData.getColumnCount(); i++) {
@@ -0,0 +1,150 @@
+package querysheet.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ConnectionPool {
+
+	private static Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+	private final String url;
+
+	private final String user;
+
+	private final String password;
+
+	private final String snapshot;
+
+	private final Semaphore permits;
+
+	private final Deque<DatabaseAPI> idle = new ArrayDeque<>();
+
+	private final Set<DatabaseAPI> leased = new HashSet<>();
+
+	private boolean closed = false;
+
+	private final AtomicInteger inUse = new AtomicInteger();
+
+	public ConnectionPool(String url, String user, String password, int size, String snapshot) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.snapshot = snapshot;
+		this.permits = new Semaphore(Math.max(1, size), true);
+	}
+
+	public DatabaseAPI acquire() {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		inUse.incrementAndGet();
+
+		try {
+			DatabaseAPI db;
+			synchronized (idle) {
+				if (closed) {
+					throw new RuntimeException("connection pool is closed: " + url);
+				}
+				// most recently used first, so a single worker keeps its session (and temp tables)
+				db = idle.pollFirst();
+			}
+
+			if (db == null) {
+				db = connect();
+			}
+
+			synchronized (idle) {
+				leased.add(db);
+			}
+			return db;
+		} catch (RuntimeException e) {
+			inUse.decrementAndGet();
+			permits.release();
+			throw e;
+		}
+	}
+
+	void release(DatabaseAPI db, boolean reusable) {
+		boolean discard = false;
+		synchronized (idle) {
+			// connections still leased when the pool closed were already closed by close()
+			if (leased.remove(db)) {
+				if (reusable && !closed) {
+					idle.addFirst(db);
+				} else {
+					discard = true;
+				}
+			}
+		}
+
+		if (discard) {
+			discard(db);
+		}
+		inUse.decrementAndGet();
+		permits.release();
+	}
+
+	public int inUse() {
+		return inUse.get();
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public void close() {
+		List<DatabaseAPI> connections;
+		synchronized (idle) {
+			closed = true;
+			connections = new ArrayList<>(idle);
+			connections.addAll(leased);
+			idle.clear();
+			leased.clear();
+		}
+
+		for (DatabaseAPI db : connections) {
+			try {
+				db.cancel();
+			} catch (RuntimeException e) {
+				logger.warn("could not cancel query on close: " + e.getMessage());
+			}
+			discard(db);
+		}
+	}
+
+	private void discard(DatabaseAPI db) {
+		try {
+			db.close();
+		} catch (RuntimeException e) {
+			logger.warn(String.format("could not close connection: url=%s, error=%s", url, e.getMessage()));
+		}
+	}
+
+	protected DatabaseAPI connect() {
+		DatabaseAPI db = new DatabaseAPI(url, user, password);
+
+		try {
+			if (snapshot != null) {
+				db.attachSnapshot(snapshot);
+			}
+		} catch (RuntimeException e) {
+			db.close();
+			throw e;
+		}
+
+		db.setPool(this);
+		return db;
+	}
+}
@@ -0,0 +1,61 @@
+package querysheet.db;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DataSource {
+
+	public enum Routing {
+		ROUND_ROBIN, LEAST_LOADED
+	}
+
+	private final String name;
+
+	private final ConnectionPool primary;
+
+	private final List<ConnectionPool> replicas;
+
+	private final Routing routing;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	public DataSource(String name, ConnectionPool primary, List<ConnectionPool> replicas, Routing routing) {
+		this.name = name;
+		this.primary = primary;
+		this.replicas = replicas;
+		this.routing = routing;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public DatabaseAPI acquire(boolean read) {
+		return pool(read).acquire();
+	}
+
+	ConnectionPool pool(boolean read) {
+		if (!read || replicas.isEmpty()) {
+			return primary;
+		}
+
+		if (routing == Routing.LEAST_LOADED) {
+			ConnectionPool least = replicas.get(0);
+			for (ConnectionPool replica : replicas) {
+				if (replica.inUse() < least.inUse()) {
+					least = replica;
+				}
+			}
+			return least;
+		}
+
+		return replicas.get((next.getAndIncrement() & Integer.MAX_VALUE) % replicas.size());
+	}
+
+	public void close() {
+		primary.close();
+		for (ConnectionPool replica : replicas) {
+			replica.close();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package querysheet.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import querysheet.utils.Setup;
+
+public class DataSources {
+
+	private final String snapshot;
+
+	private final Map<String, DataSource> sources = new HashMap<>();
+
+	public DataSources(String snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	public synchronized DataSource get(String name) {
+		DataSource source = sources.get(name);
+
+		if (source == null) {
+			source = create(name);
+			sources.put(name, source);
+		}
+
+		return source;
+	}
+
+	public synchronized void close() {
+		for (DataSource source : sources.values()) {
+			source.close();
+		}
+		sources.clear();
+	}
+
+	private DataSource create(String name) {
+		if (!Setup.hasDataSource(name)) {
+			throw new RuntimeException("unknown data source: " + name);
+		}
+
+		String user = Setup.getUser(name);
+		String password = Setup.getPassword(name);
+		int size = Setup.getPoolSize(name);
+
+		// the exported snapshot lives on the default primary, replicas cannot import it
+		String attach = Setup.DEFAULT_DATASOURCE.equals(name) ? snapshot : null;
+
+		ConnectionPool primary = new ConnectionPool(Setup.getJdbcUrl(name), user, password, size, attach);
+
+		List<ConnectionPool> replicas = new ArrayList<>();
+		if (attach == null) {
+			for (String url : Setup.getReplicaUrls(name)) {
+				replicas.add(new ConnectionPool(url, user, password, size, null));
+			}
+		}
+
+		return new DataSource(name, primary, replicas, DataSource.Routing.valueOf(Setup.getReplicaRouting(name)));
+	}
+}
@@ -6,26 +6,97 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import querysheet.utils.Setup;
 
 public class DatabaseAPI implements Closeable {
 
+	private static final long WATCHDOG_GRACE_MS = 5000;
+
+	private static Logger logger = LoggerFactory.getLogger(DatabaseAPI.class);
+
+	private static ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "query-watchdog");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
 	private Connection conn;
 
 	private ResultSet rs;
 
+	private volatile PreparedStatement statement;
+
+	private int statementTimeout = 0;
+
+	private boolean transaction = false;
+
+	private volatile boolean broken = false;
+
+	private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+			if (size() <= Math.max(1, Setup.getStatementCache())) {
+				return false;
+			}
+
+			try {
+				eldest.getValue().close();
+			} catch (SQLException e) {
+				logger.warn("could not close cached statement: " + e.getMessage());
+			}
+			return true;
+		}
+	};
+
+	private ConnectionPool pool;
+
 	public DatabaseAPI() {
+		this(Setup.getJdbcUrl(), Setup.getUser(), Setup.getPassword());
+	}
+
+	DatabaseAPI(Connection conn) {
+		this.conn = conn;
+	}
+
+	public DatabaseAPI(String url, String user, String password) {
 		try {
 			loadDriver();
-			connect();
+			connect(url, user, password);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	private void connect() throws SQLException {
-		conn = DriverManager.getConnection(Setup.getJdbcUrl(), Setup.getUser(), Setup.getPassword());
+	private void connect(String url, String user, String password) throws SQLException {
+		Properties props = new Properties();
+		if (user != null) {
+			props.setProperty("user", user);
+		}
+		if (password != null) {
+			props.setProperty("password", password);
+		}
+		// cached statements should get a server-side plan from their first run, not after the driver's default of five
+		props.setProperty("prepareThreshold", String.valueOf(Setup.getPrepareThreshold()));
+
+		conn = DriverManager.getConnection(url, props);
 	}
 
 	private void loadDriver() throws ClassNotFoundException {
@@ -33,13 +104,152 @@ public class DatabaseAPI implements Closeable {
 	}
 
 	public DatabaseAPI query(String sql) {
+		return query(sql, 0);
+	}
+
+	public DatabaseAPI query(String sql, int timeoutSeconds, Object... params) {
 		try {
 			closeResultSet();
-
-			PreparedStatement ps = conn.prepareStatement(sql);
-			rs = ps.executeQuery();
+			setStatementTimeout(timeoutSeconds);
+			execute(prepare(sql, params), timeoutSeconds, true);
 			return this;
 		} catch (Exception e) {
+			checkConnection(e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	public String exportSnapshot() {
+		try {
+			beginRepeatableRead();
+
+			Statement st = conn.createStatement();
+			try {
+				ResultSet snapshot = st.executeQuery("select pg_export_snapshot()");
+				snapshot.next();
+				return snapshot.getString(1);
+			} finally {
+				st.close();
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void attachSnapshot(String snapshotId) {
+		try {
+			beginRepeatableRead();
+
+			Statement st = conn.createStatement();
+			try {
+				st.execute("SET TRANSACTION SNAPSHOT '" + snapshotId.replace("'", "''") + "'");
+			} finally {
+				st.close();
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private PreparedStatement prepare(String sql, Object[] params) throws SQLException {
+		PreparedStatement ps = statements.get(sql);
+
+		if (ps == null) {
+			ps = conn.prepareStatement(sql);
+			statements.put(sql, ps);
+		} else {
+			ps.clearParameters();
+		}
+
+		for (int i = 0; i < params.length; i++) {
+			if (params[i] == null) {
+				ps.setNull(i + 1, Types.NULL);
+			} else {
+				ps.setObject(i + 1, params[i]);
+			}
+		}
+
+		return ps;
+	}
+
+	private void beginRepeatableRead() throws SQLException {
+		conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+		conn.setAutoCommit(false);
+		transaction = true;
+	}
+
+	private void execute(PreparedStatement ps, int timeoutSeconds, boolean results) throws SQLException {
+		ps.setQueryTimeout(timeoutSeconds);
+		statement = ps;
+
+		// a failed statement would abort the whole snapshot transaction, so each one gets a savepoint
+		Savepoint savepoint = transaction ? conn.setSavepoint() : null;
+		ScheduledFuture<?> cancel = watch(ps, timeoutSeconds);
+		try {
+			if (results) {
+				rs = ps.executeQuery();
+			} else {
+				ps.execute();
+			}
+
+			if (savepoint != null) {
+				conn.releaseSavepoint(savepoint);
+			}
+		} catch (SQLException e) {
+			if (savepoint != null && !isConnectionFailure(e)) {
+				conn.rollback(savepoint);
+			}
+			throw e;
+		} finally {
+			if (cancel != null) {
+				cancel.cancel(false);
+			}
+		}
+	}
+
+	private void setStatementTimeout(int timeoutSeconds) throws SQLException {
+		if (timeoutSeconds == statementTimeout) {
+			return;
+		}
+
+		Statement st = conn.createStatement();
+		try {
+			st.execute("SET statement_timeout = " + timeoutSeconds * 1000L);
+		} finally {
+			st.close();
+		}
+		statementTimeout = timeoutSeconds;
+	}
+
+	private ScheduledFuture<?> watch(final PreparedStatement ps, final int timeoutSeconds) {
+		if (timeoutSeconds <= 0) {
+			return null;
+		}
+
+		return watchdog.schedule(new Runnable() {
+			@Override
+			public void run() {
+				logger.warn(String.format("query still running %d s after its %d s timeout, cancelling",
+						WATCHDOG_GRACE_MS / 1000, timeoutSeconds));
+				try {
+					ps.cancel();
+				} catch (SQLException e) {
+					logger.warn("could not cancel query: " + e.getMessage());
+				}
+			}
+		}, timeoutSeconds * 1000L + WATCHDOG_GRACE_MS, TimeUnit.MILLISECONDS);
+	}
+
+	public void cancel() {
+		PreparedStatement ps = statement;
+
+		if (ps == null) {
+			return;
+		}
+
+		try {
+			ps.cancel();
+		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		}
 	}
@@ -48,6 +258,39 @@ public class DatabaseAPI implements Closeable {
 		return rs;
 	}
 
+	void setPool(ConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	public void release() {
+		if (pool == null) {
+			close();
+			return;
+		}
+
+		boolean reusable = !broken;
+		try {
+			closeResultSet();
+			reusable = reusable && !conn.isClosed();
+		} catch (SQLException e) {
+			reusable = false;
+		} finally {
+			pool.release(this, reusable);
+		}
+	}
+
+	private void checkConnection(Exception e) {
+		if (e instanceof SQLException && isConnectionFailure((SQLException) e)) {
+			broken = true;
+		}
+	}
+
+	private static boolean isConnectionFailure(SQLException e) {
+		// class 08 is connection exception, 57P0x is the server shutting down; both leave the session unusable
+		String state = e.getSQLState();
+		return state != null && (state.startsWith("08") || state.startsWith("57P"));
+	}
+
 	@Override
 	public void close() {
 		try {
@@ -59,6 +302,9 @@ public class DatabaseAPI implements Closeable {
 	}
 
 	private void closeConnection() throws SQLException {
+		if (transaction) {
+			conn.commit();
+		}
 		conn.close();
 	}
 
@@ -70,10 +316,15 @@ public class DatabaseAPI implements Closeable {
 	}
 
 	public void exec(String sql) {
+		exec(sql, 0);
+	}
+
+	public void exec(String sql, int timeoutSeconds, Object... params) {
 		try {
-			PreparedStatement ps = conn.prepareStatement(sql);
-			ps.execute();
+			setStatementTimeout(timeoutSeconds);
+			execute(prepare(sql, params), timeoutSeconds, false);
 		} catch (Exception e) {
+			checkConnection(e);
 			throw new RuntimeException(e);
 		}
 	}
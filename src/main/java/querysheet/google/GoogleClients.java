@@ -0,0 +1,201 @@
+package querysheet.google;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.CredentialRefreshListener;
+import com.google.api.client.auth.oauth2.StoredCredential;
+import com.google.api.client.auth.oauth2.TokenErrorResponse;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.GZipEncoding;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.drive.Drive;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.utils.Setup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ProxySelector;
+import java.util.concurrent.TimeUnit;
+
+public class GoogleClients {
+
+    private static final String APPLICATION_NAME = "querysheet";
+
+    private static final int VALIDATE_AFTER_INACTIVITY_MS = 2000;
+
+    private static final int REQUEST_RETRIES = 1;
+
+    private static final long REFRESH_RETRY_MS = 30 * 1000;
+
+    private static final HttpTransport transport = createTransport();
+
+    private static final JsonFactory jsonFactory = new JacksonFactory();
+
+    private static Logger logger = LoggerFactory.getLogger(GoogleClients.class);
+
+    private static GoogleCredential credential;
+
+    public static HttpTransport transport() {
+        return transport;
+    }
+
+    public static JsonFactory jsonFactory() {
+        return jsonFactory;
+    }
+
+    public static synchronized GoogleCredential credential() {
+        if (credential == null) {
+            credential = createCredential(new TokenStore(new File(Setup.getTokenStore()), Setup.getTokenKey()));
+        }
+        return credential;
+    }
+
+    static GoogleCredential createCredential(final TokenStore store) {
+        GoogleCredential credential = new GoogleCredential.Builder()
+                .setTransport(transport)
+                .setJsonFactory(jsonFactory)
+                .setClientSecrets(Setup.getClientId(), Setup.getClientSecret())
+                .addRefreshListener(new CredentialRefreshListener() {
+                    @Override
+                    public void onTokenResponse(Credential credential, TokenResponse response) {
+                        store.save(new StoredCredential(credential));
+                    }
+
+                    @Override
+                    public void onTokenErrorResponse(Credential credential, TokenErrorResponse response) {
+                        store.delete();
+                    }
+                })
+                .build();
+        credential.setRefreshToken(Setup.getRefreshToken());
+
+        StoredCredential stored = store.load();
+        if (stored != null && stored.getAccessToken() != null && stored.getExpirationTimeMilliseconds() != null
+                && stored.getRefreshToken() != null && stored.getRefreshToken().equals(credential.getRefreshToken())) {
+            credential.setAccessToken(stored.getAccessToken());
+            credential.setExpirationTimeMilliseconds(stored.getExpirationTimeMilliseconds());
+        }
+
+        refreshInBackground(credential, Setup.getTokenRefreshMargin());
+
+        return credential;
+    }
+
+    static long refreshDelay(Credential credential, long margin) {
+        Long expiresIn = credential.getExpiresInSeconds();
+
+        if (expiresIn == null || expiresIn <= 0) {
+            return Math.max(margin, REFRESH_RETRY_MS);
+        }
+        return Math.max(0, expiresIn * 1000 - margin);
+    }
+
+    private static void refreshInBackground(final Credential credential, final long margin) {
+        Thread refresh = new Thread("token-refresh") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Thread.sleep(refreshDelay(credential, margin));
+
+                        Long expiresIn = credential.getExpiresInSeconds();
+                        if (expiresIn == null || expiresIn <= 0 || expiresIn * 1000 > margin) {
+                            continue;
+                        }
+
+                        try {
+                            credential.refreshToken();
+                        } catch (IOException e) {
+                            logger.warn("background token refresh failed: " + e.getMessage());
+                            Thread.sleep(REFRESH_RETRY_MS);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        refresh.setDaemon(true);
+        refresh.start();
+    }
+
+    public static HttpRequestFactory requestFactory() {
+        return requestFactory(credential());
+    }
+
+    static HttpRequestFactory requestFactory(HttpRequestInitializer initializer) {
+        return transport.createRequestFactory(gzip(initializer));
+    }
+
+    public static Drive drive() {
+        return new Drive.Builder(transport, jsonFactory, credential()).setApplicationName(APPLICATION_NAME).build();
+    }
+
+    private static HttpRequestInitializer gzip(final HttpRequestInitializer initializer) {
+        return new HttpRequestInitializer() {
+            @Override
+            public void initialize(HttpRequest request) throws IOException {
+                initializer.initialize(request);
+
+                final HttpExecuteInterceptor interceptor = request.getInterceptor();
+                request.setInterceptor(new HttpExecuteInterceptor() {
+                    @Override
+                    public void intercept(HttpRequest request) throws IOException {
+                        if (interceptor != null) {
+                            interceptor.intercept(request);
+                        }
+                        if (request.getContent() != null && request.getEncoding() == null) {
+                            request.setEncoding(new GZipEncoding());
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    private static HttpTransport createTransport() {
+        final long keepAlive = Setup.getHttpKeepAlive();
+
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(Setup.getHttpConnections() * 2);
+        connections.setDefaultMaxPerRoute(Setup.getHttpConnections());
+        connections.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+        connections.setDefaultSocketConfig(SocketConfig.custom().setTcpNoDelay(true).setSoKeepAlive(true).build());
+        connections.setDefaultConnectionConfig(ConnectionConfig.custom().setBufferSize(Setup.getHttpSocketBuffer()).build());
+
+        return new ApacheHttpTransport(new PooledHttpClient(HttpClients.custom()
+                .setConnectionManager(connections)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .setRetryHandler(new DefaultHttpRequestRetryHandler(REQUEST_RETRIES, false))
+                .setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+                    @Override
+                    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                        long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                        return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+                    }
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+                .disableRedirectHandling()
+                .disableContentCompression()
+                .build()));
+    }
+}
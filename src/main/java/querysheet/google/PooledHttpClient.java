@@ -0,0 +1,42 @@
+package querysheet.google;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+
+class PooledHttpClient extends CloseableHttpClient {
+
+    private final CloseableHttpClient client;
+
+    PooledHttpClient(CloseableHttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+        return client.execute(target, request, context);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    // ApacheHttpTransport only reads these to tune a DefaultHttpClient; builder clients throw from them, so
+    // returning null lets the transport fall back to its own defaults while requests go through the pool.
+    @Override
+    @Deprecated
+    public org.apache.http.params.HttpParams getParams() {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public org.apache.http.conn.ClientConnectionManager getConnectionManager() {
+        return null;
+    }
+}
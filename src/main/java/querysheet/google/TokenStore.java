@@ -0,0 +1,196 @@
+package querysheet.google;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+public class TokenStore {
+
+    private static final int VERSION = 1;
+
+    private static final int SALT_BYTES = 16;
+
+    private static final int IV_BYTES = 16;
+
+    private static final int MAC_BYTES = 32;
+
+    private static final int KEY_ITERATIONS = 10000;
+
+    private static Logger logger = LoggerFactory.getLogger(TokenStore.class);
+
+    private final File file;
+
+    private final char[] passphrase;
+
+    private final SecureRandom random = new SecureRandom();
+
+    public TokenStore(File file, String passphrase) {
+        this.file = file;
+        this.passphrase = passphrase == null ? new char[0] : passphrase.toCharArray();
+    }
+
+    public synchronized StoredCredential load() {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            return decrypt(Files.readAllBytes(file.toPath()));
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn(String.format("ignoring unreadable token store: file=%s, error=%s", file, e.getMessage()));
+            return null;
+        }
+    }
+
+    public synchronized void save(StoredCredential credential) {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("could not create " + dir);
+            }
+
+            File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            restrictToOwner(tmp);
+
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(encrypt(credential));
+            } finally {
+                out.close();
+            }
+
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                    throw new IOException("could not replace " + file);
+                }
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void delete() {
+        file.delete();
+    }
+
+    private byte[] encrypt(StoredCredential credential) throws IOException, GeneralSecurityException {
+        byte[] salt = randomBytes(SALT_BYTES);
+        byte[] iv = randomBytes(IV_BYTES);
+        byte[][] keys = keys(salt);
+
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keys[0], "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(serialize(credential));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.write(salt);
+        out.write(iv);
+        out.write(encrypted);
+        out.write(mac(keys[1], bytes.toByteArray()));
+        out.close();
+
+        return bytes.toByteArray();
+    }
+
+    private StoredCredential decrypt(byte[] bytes) throws IOException, GeneralSecurityException {
+        int headerBytes = 1 + SALT_BYTES + IV_BYTES;
+
+        if (bytes.length < headerBytes + MAC_BYTES || bytes[0] != VERSION) {
+            throw new IOException("unknown token store format");
+        }
+
+        byte[] salt = Arrays.copyOfRange(bytes, 1, 1 + SALT_BYTES);
+        byte[] iv = Arrays.copyOfRange(bytes, 1 + SALT_BYTES, headerBytes);
+        byte[] signed = Arrays.copyOfRange(bytes, 0, bytes.length - MAC_BYTES);
+        byte[] mac = Arrays.copyOfRange(bytes, bytes.length - MAC_BYTES, bytes.length);
+        byte[][] keys = keys(salt);
+
+        if (!MessageDigest.isEqual(mac, mac(keys[1], signed))) {
+            throw new IOException("token store failed integrity check");
+        }
+
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(keys[0], "AES"), new IvParameterSpec(iv));
+        return deserialize(cipher.doFinal(signed, headerBytes, signed.length - headerBytes));
+    }
+
+    private byte[][] keys(byte[] salt) throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+        byte[] material = factory.generateSecret(new PBEKeySpec(passphrase, salt, KEY_ITERATIONS, 256)).getEncoded();
+        return new byte[][]{Arrays.copyOfRange(material, 0, 16), Arrays.copyOfRange(material, 16, 32)};
+    }
+
+    private byte[] mac(byte[] key, byte[] data) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return mac.doFinal(data);
+    }
+
+    private byte[] serialize(StoredCredential credential) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, credential.getAccessToken());
+        writeString(out, credential.getRefreshToken());
+        Long expiration = credential.getExpirationTimeMilliseconds();
+        out.writeLong(expiration == null ? -1 : expiration);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private StoredCredential deserialize(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        StoredCredential credential = new StoredCredential();
+        credential.setAccessToken(readString(in));
+        credential.setRefreshToken(readString(in));
+        long expiration = in.readLong();
+        credential.setExpirationTimeMilliseconds(expiration < 0 ? null : expiration);
+        return credential;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private void restrictToOwner(File file) {
+        file.setReadable(false, false);
+        file.setWritable(false, false);
+        file.setReadable(true, true);
+        file.setWritable(true, true);
+    }
+}
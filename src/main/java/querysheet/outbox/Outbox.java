@@ -0,0 +1,121 @@
+package querysheet.outbox;
+
+import com.github.feroult.gapi.BatchOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.batch.ResultSetToSpreadsheetBatch;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Outbox {
+
+    private static final String SUFFIX = ".qsb";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static Logger logger = LoggerFactory.getLogger(Outbox.class);
+
+    private final File dir;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    public Outbox(File dir) {
+        this.dir = dir;
+    }
+
+    public OutboxEntry append(String key, String worksheet, ResultSetToSpreadsheetBatch batch, BatchOptions[] options) {
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("could not create " + dir);
+            }
+
+            String name = String.format("%013d-%06d", System.currentTimeMillis(), sequence.incrementAndGet());
+            File tmp = new File(dir, name + TMP_SUFFIX);
+            File file = new File(dir, name + SUFFIX);
+
+            OutboxEntry.write(tmp, key, worksheet, batch, options);
+
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("could not move " + tmp + " to " + file);
+            }
+
+            OutboxEntry entry = OutboxEntry.read(file);
+            supersede(entry);
+            logger.info(String.format("queued %d rows in outbox, spreadsheet=%s, worksheet=%s, file=%s", entry.getRows(),
+                    key, worksheet, file.getName()));
+            return entry;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public List<OutboxEntry> pending() {
+        Map<String, OutboxEntry> latest = new LinkedHashMap<>();
+
+        for (OutboxEntry entry : entries()) {
+            OutboxEntry previous = latest.remove(target(entry));
+            if (previous != null) {
+                discard(previous, entry);
+            }
+            latest.put(target(entry), entry);
+        }
+
+        return new ArrayList<>(latest.values());
+    }
+
+    public void remove(OutboxEntry entry) {
+        entry.getFile().delete();
+    }
+
+    private void supersede(OutboxEntry entry) {
+        for (OutboxEntry other : entries()) {
+            if (target(other).equals(target(entry)) && other.getFile().getName().compareTo(entry.getFile().getName()) < 0) {
+                discard(other, entry);
+            }
+        }
+    }
+
+    private void discard(OutboxEntry older, OutboxEntry newer) {
+        remove(older);
+        logger.info(String.format("dropped outbox entry superseded by %s: spreadsheet=%s, worksheet=%s, file=%s",
+                newer.getFile().getName(), older.getKey(), older.getWorksheet(), older.getFile().getName()));
+    }
+
+    private String target(OutboxEntry entry) {
+        return entry.getKey() + "!" + entry.getWorksheet();
+    }
+
+    private List<OutboxEntry> entries() {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+
+        List<OutboxEntry> entries = new ArrayList<>();
+        if (files == null) {
+            return entries;
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            try {
+                entries.add(OutboxEntry.read(file));
+            } catch (IOException e) {
+                logger.warn(String.format("skipping unreadable outbox entry: file=%s, error=%s", file, e.getMessage()));
+            }
+        }
+
+        return entries;
+    }
+}
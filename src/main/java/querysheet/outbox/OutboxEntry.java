@@ -0,0 +1,211 @@
+package querysheet.outbox;
+
+import com.github.feroult.gapi.BatchOptions;
+import querysheet.batch.CellSink;
+import querysheet.batch.ResultSetToSpreadsheetBatch;
+import querysheet.batch.TableToSpreadsheetBatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public class OutboxEntry {
+
+    private static final int MAGIC = 0x51534231;
+
+    private final File file;
+
+    private String key;
+
+    private String worksheet;
+
+    private BatchOptions[] options;
+
+    private int rows;
+
+    private int cols;
+
+    private OutboxEntry(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getWorksheet() {
+        return worksheet;
+    }
+
+    public BatchOptions[] getOptions() {
+        return options;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public TableToSpreadsheetBatch batch() {
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch();
+
+        try {
+            DataInputStream in = open();
+            try {
+                readHeader(in);
+
+                DataInputStream cells = new DataInputStream(new InflaterInputStream(in));
+                byte[] buffer = new byte[256];
+
+                for (int row = 0; row < rows; row++) {
+                    String[] values = new String[cols];
+
+                    for (int column = 0; column < cols; column++) {
+                        int length = readVarInt(cells);
+                        if (buffer.length < length) {
+                            buffer = new byte[length * 2];
+                        }
+                        cells.readFully(buffer, 0, length);
+                        values[column] = new String(buffer, 0, length, "UTF-8");
+                    }
+
+                    batch.addStrings(values);
+                }
+
+                batch.freeze();
+                return batch;
+            } finally {
+                in.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            batch.close();
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+    }
+
+    static OutboxEntry write(File file, String key, String worksheet, ResultSetToSpreadsheetBatch batch,
+                             BatchOptions[] options) throws IOException {
+        OutboxEntry entry = new OutboxEntry(file);
+        entry.key = key;
+        entry.worksheet = worksheet;
+        entry.options = options;
+        entry.rows = batch.rows();
+        entry.cols = batch.cols();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            entry.writeHeader(out);
+
+            final DataOutputStream cells = new DataOutputStream(new DeflaterOutputStream(out));
+            batch.stream(new CellSink() {
+                @Override
+                public void startRow(int row) {
+                }
+
+                @Override
+                public void cell(int column, CharSequence value) {
+                    try {
+                        byte[] bytes = (value == null ? "" : value.toString()).getBytes("UTF-8");
+                        writeVarInt(cells, bytes.length);
+                        cells.write(bytes);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                @Override
+                public void endRow(int row) {
+                }
+            });
+            cells.close();
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            file.delete();
+            throw e;
+        }
+
+        return entry;
+    }
+
+    static OutboxEntry read(File file) throws IOException {
+        OutboxEntry entry = new OutboxEntry(file);
+
+        DataInputStream in = entry.open();
+        try {
+            entry.readHeader(in);
+        } finally {
+            in.close();
+        }
+
+        return entry;
+    }
+
+    private DataInputStream open() throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeUTF(key);
+        out.writeUTF(worksheet);
+        out.writeByte(options.length);
+        for (BatchOptions option : options) {
+            out.writeUTF(option.name());
+        }
+        out.writeInt(rows);
+        out.writeInt(cols);
+    }
+
+    private void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not an outbox entry: " + file);
+        }
+
+        key = in.readUTF();
+        worksheet = in.readUTF();
+
+        List<BatchOptions> options = new ArrayList<>();
+        for (int i = in.readByte(); i > 0; i--) {
+            options.add(BatchOptions.valueOf(in.readUTF()));
+        }
+        this.options = options.toArray(new BatchOptions[]{});
+
+        rows = in.readInt();
+        cols = in.readInt();
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
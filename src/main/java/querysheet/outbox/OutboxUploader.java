@@ -0,0 +1,106 @@
+package querysheet.outbox;
+
+import com.github.feroult.gapi.GoogleAPI;
+import com.github.feroult.gapi.spreadsheet.SpreadsheetBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.batch.TableToSpreadsheetBatch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class OutboxUploader {
+
+    private static Logger logger = LoggerFactory.getLogger(OutboxUploader.class);
+
+    private final Outbox outbox;
+
+    private final GoogleAPI google;
+
+    private final int retries;
+
+    private final long retryWait;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public OutboxUploader(Outbox outbox, GoogleAPI google, int retries, long retryWait) {
+        this.outbox = outbox;
+        this.google = google;
+        this.retries = retries;
+        this.retryWait = retryWait;
+    }
+
+    public void start() {
+        for (OutboxEntry entry : outbox.pending()) {
+            submit(entry);
+        }
+    }
+
+    public void submit(final OutboxEntry entry) {
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                drain(entry);
+            }
+        });
+    }
+
+    public boolean await(long timeout) {
+        executor.shutdown();
+
+        try {
+            boolean drained = executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+            if (!drained) {
+                logger.warn("outbox not drained in time, remaining entries will be uploaded on the next run");
+                executor.shutdownNow();
+            }
+            return drained;
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            return false;
+        }
+    }
+
+    protected void upload(OutboxEntry entry, SpreadsheetBatch batch) {
+        google.spreadsheet(entry.getKey()).worksheet(entry.getWorksheet()).batch(batch, entry.getOptions());
+    }
+
+    private void drain(OutboxEntry entry) {
+        if (!entry.getFile().exists()) {
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long time = System.currentTimeMillis();
+                TableToSpreadsheetBatch batch = entry.batch();
+                try {
+                    upload(entry, batch);
+                } finally {
+                    batch.close();
+                }
+                outbox.remove(entry);
+
+                logger.info(String.format("uploaded outbox entry in %d ms, rows=%d, spreadsheet=%s, worksheet=%s",
+                        System.currentTimeMillis() - time, entry.getRows(), entry.getKey(), entry.getWorksheet()));
+                return;
+            } catch (RuntimeException e) {
+                if (attempt > retries) {
+                    logger.warn(String.format("giving up on outbox entry until next run: file=%s, error=%s",
+                            entry.getFile().getName(), e.getMessage()));
+                    return;
+                }
+
+                logger.warn(String.format("outbox upload failed, retrying (%d/%d): worksheet=%s, error=%s", attempt,
+                        retries, entry.getWorksheet(), e.getMessage()));
+
+                try {
+                    Thread.sleep(retryWait << (attempt - 1));
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package querysheet.upload;
+
+import com.github.feroult.gapi.BatchOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.batch.ResultSetToSpreadsheetBatch;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+public class ChunkedUpload {
+
+    private static final long RETRY_WAIT_MS = 1000;
+
+    private static Logger logger = LoggerFactory.getLogger(ChunkedUpload.class);
+
+    private final RangeWriter writer;
+
+    private final ExecutorService executor;
+
+    private final int maxInFlight;
+
+    private final int retries;
+
+    private long retryWait = RETRY_WAIT_MS;
+
+    private ConcurrentMap<String, Semaphore> inFlight = new ConcurrentHashMap<>();
+
+    public ChunkedUpload(RangeWriter writer, ExecutorService executor, int maxInFlight, int retries) {
+        this.writer = writer;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.retries = retries;
+    }
+
+    public void setRetryWait(long retryWait) {
+        this.retryWait = retryWait;
+    }
+
+    public void upload(String key, String worksheet, ResultSetToSpreadsheetBatch batch, int chunkRows, BatchOptions[] options) {
+        int rows = batch.rows();
+        int cols = batch.cols();
+        int chunks = 0;
+
+        writer.prepare(key, worksheet, rows, cols);
+
+        UploadGroup group = new UploadGroup(executor);
+
+        for (int first = 1; first <= rows; first += chunkRows) {
+            group.submit(chunk(key, worksheet, batch, first, Math.min(rows, first + chunkRows - 1)));
+            chunks++;
+        }
+
+        group.await();
+
+        if (Arrays.asList(options).contains(BatchOptions.SHRINK)) {
+            writer.resize(key, worksheet, rows, cols);
+        }
+
+        logger.info(String.format("uploaded %d rows in %d chunks, spreadsheet=%s, worksheet=%s", rows, chunks, key, worksheet));
+    }
+
+    private Callable<Void> chunk(final String key, final String worksheet, final ResultSetToSpreadsheetBatch batch,
+                                 final int firstRow, final int lastRow) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                write(key, worksheet, firstRow, batch.getRange(firstRow, lastRow));
+                return null;
+            }
+        };
+    }
+
+    private void write(String key, String worksheet, int firstRow, String[][] values) throws InterruptedException {
+        Semaphore semaphore = semaphore(key);
+
+        for (int attempt = 1; ; attempt++) {
+            semaphore.acquire();
+            try {
+                writer.write(key, worksheet, firstRow, values);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt > retries) {
+                    throw e;
+                }
+
+                logger.warn(String.format("chunk failed, retrying (%d/%d): worksheet=%s, row=%d, error=%s", attempt, retries,
+                        worksheet, firstRow, e.getMessage()));
+            } finally {
+                semaphore.release();
+            }
+
+            Thread.sleep(retryWait * attempt);
+        }
+    }
+
+    private Semaphore semaphore(String key) {
+        Semaphore semaphore = inFlight.get(key);
+
+        if (semaphore == null) {
+            inFlight.putIfAbsent(key, new Semaphore(maxInFlight));
+            semaphore = inFlight.get(key);
+        }
+
+        return semaphore;
+    }
+}
@@ -0,0 +1,139 @@
+package querysheet.upload;
+
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.batch.CsvCellSink;
+import querysheet.batch.ResultSetToSpreadsheetBatch;
+import querysheet.google.GoogleClients;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.Writer;
+
+public class CsvUpload {
+
+    private static final String CSV_MIME_TYPE = "text/csv";
+
+    private static final String SPREADSHEET_MIME_TYPE = "application/vnd.google-apps.spreadsheet";
+
+    private static final int PIPE_BUFFER = 256 * 1024;
+
+    private static Logger logger = LoggerFactory.getLogger(CsvUpload.class);
+
+    private final Drive drive;
+
+    private final SheetsRangeWriter sheets;
+
+    public CsvUpload() {
+        this(GoogleClients.drive(), new SheetsRangeWriter());
+    }
+
+    public CsvUpload(Drive drive, SheetsRangeWriter sheets) {
+        this.drive = drive;
+        this.sheets = sheets;
+    }
+
+    public void upload(String key, String worksheet, ResultSetToSpreadsheetBatch batch) {
+        String importedKey = importCsv(key + "_" + worksheet, batch);
+
+        try {
+            sheets.replaceWithCopy(importedKey, key, worksheet);
+        } finally {
+            delete(importedKey);
+        }
+
+        logger.info(String.format("uploaded %d rows as csv, spreadsheet=%s, worksheet=%s", batch.rows(), key, worksheet));
+    }
+
+    private String importCsv(String title, ResultSetToSpreadsheetBatch batch) {
+        File metadata = new File();
+        metadata.setTitle(title);
+        metadata.setMimeType(SPREADSHEET_MIME_TYPE);
+
+        try {
+            PipedInputStream in = new PipedInputStream(PIPE_BUFFER);
+            CsvWriter writer = new CsvWriter(batch, new PipedOutputStream(in));
+            writer.start();
+
+            try {
+                Drive.Files.Insert insert = drive.files().insert(metadata, new InputStreamContent(CSV_MIME_TYPE, in));
+                insert.setConvert(true);
+                insert.setDisableGZipContent(true);
+                insert.getMediaHttpUploader().setDirectUploadEnabled(false);
+
+                String id = insert.execute().getId();
+                try {
+                    writer.await();
+                } catch (RuntimeException e) {
+                    delete(id);
+                    throw e;
+                }
+                return id;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            drive.files().delete(key).execute();
+        } catch (IOException e) {
+            logger.warn(String.format("could not delete imported spreadsheet: key=%s, error=%s", key, e.getMessage()));
+        }
+    }
+
+    private static class CsvWriter extends Thread {
+
+        private final ResultSetToSpreadsheetBatch batch;
+
+        private final PipedOutputStream out;
+
+        private volatile RuntimeException error;
+
+        private CsvWriter(ResultSetToSpreadsheetBatch batch, PipedOutputStream out) {
+            super("csv-writer");
+            setDaemon(true);
+            this.batch = batch;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+                batch.stream(new CsvCellSink(writer));
+                writer.close();
+            } catch (IOException e) {
+                error = new RuntimeException(e);
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void await() {
+            try {
+                join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+}
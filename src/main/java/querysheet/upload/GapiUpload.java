@@ -0,0 +1,34 @@
+package querysheet.upload;
+
+import com.github.feroult.gapi.BatchOptions;
+import com.github.feroult.gapi.GoogleAPI;
+import com.github.feroult.gapi.spreadsheet.SpreadsheetBatch;
+
+import java.util.concurrent.Callable;
+
+public class GapiUpload implements Callable<Void> {
+
+    private final GoogleAPI google;
+
+    private final String key;
+
+    private final String worksheet;
+
+    private final SpreadsheetBatch batch;
+
+    private final BatchOptions[] options;
+
+    public GapiUpload(GoogleAPI google, String key, String worksheet, SpreadsheetBatch batch, BatchOptions... options) {
+        this.google = google;
+        this.key = key;
+        this.worksheet = worksheet;
+        this.batch = batch;
+        this.options = options;
+    }
+
+    @Override
+    public Void call() {
+        google.spreadsheet(key).worksheet(worksheet).batch(batch, options);
+        return null;
+    }
+}
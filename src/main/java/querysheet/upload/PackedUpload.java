@@ -0,0 +1,109 @@
+package querysheet.upload;
+
+import com.github.feroult.gapi.BatchOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.batch.ResultSetToSpreadsheetBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PackedUpload {
+
+    private static final int READ_ROWS = 1000;
+
+    private static final int ROW_OVERHEAD_BYTES = 3;
+
+    private static final int CELL_OVERHEAD_BYTES = 3;
+
+    private static final int REQUEST_OVERHEAD_BYTES = 512;
+
+    private static Logger logger = LoggerFactory.getLogger(PackedUpload.class);
+
+    private final SheetsRangeWriter writer;
+
+    private final long maxRequestBytes;
+
+    public PackedUpload(SheetsRangeWriter writer, long maxRequestBytes) {
+        this.writer = writer;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    public void upload(String key, String worksheet, ResultSetToSpreadsheetBatch batch, BatchOptions[] options) {
+        int rows = batch.rows();
+        int cols = batch.cols();
+        int requests = 0;
+
+        writer.prepare(key, worksheet, rows, cols);
+
+        List<String[]> pending = new ArrayList<>();
+        int pendingFirstRow = 1;
+        long pendingBytes = REQUEST_OVERHEAD_BYTES;
+
+        for (int first = 1; first <= rows; first += READ_ROWS) {
+            String[][] range = batch.getRange(first, Math.min(rows, first + READ_ROWS - 1));
+
+            for (int i = 0; i < range.length; i++) {
+                long rowBytes = rowBytes(range[i]);
+
+                if (!pending.isEmpty() && pendingBytes + rowBytes > maxRequestBytes) {
+                    writer.writeRows(key, worksheet, pendingFirstRow, pending);
+                    requests++;
+
+                    pending = new ArrayList<>();
+                    pendingFirstRow = first + i;
+                    pendingBytes = REQUEST_OVERHEAD_BYTES;
+                }
+
+                pending.add(range[i]);
+                pendingBytes += rowBytes;
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            writer.writeRows(key, worksheet, pendingFirstRow, pending);
+            requests++;
+        }
+
+        if (Arrays.asList(options).contains(BatchOptions.SHRINK)) {
+            writer.resize(key, worksheet, rows, cols);
+        }
+
+        logger.info(String.format("uploaded %d rows in %d requests, spreadsheet=%s, worksheet=%s", rows, requests, key,
+                worksheet));
+    }
+
+    static long rowBytes(String[] row) {
+        long bytes = ROW_OVERHEAD_BYTES;
+        for (String value : row) {
+            bytes += CELL_OVERHEAD_BYTES + (value == null ? 0 : jsonBytes(value));
+        }
+        return bytes;
+    }
+
+    private static long jsonBytes(String value) {
+        long bytes = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\' || c == '\b' || c == '\f' || c == '\n' || c == '\r' || c == '\t') {
+                bytes += 2;
+            } else if (c < 0x20) {
+                bytes += 6;
+            } else if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+
+        return bytes;
+    }
+}
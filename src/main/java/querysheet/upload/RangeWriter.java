@@ -0,0 +1,10 @@
+package querysheet.upload;
+
+public interface RangeWriter {
+
+    void prepare(String key, String worksheet, int rows, int cols);
+
+    void write(String key, String worksheet, int firstRow, String[][] values);
+
+    void resize(String key, String worksheet, int rows, int cols);
+}
@@ -0,0 +1,121 @@
+package querysheet.upload;
+
+import com.github.feroult.gapi.BatchOptions;
+import com.github.feroult.gapi.GoogleAPI;
+import com.github.feroult.gapi.spreadsheet.SpreadsheetBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import querysheet.batch.ShardBatch;
+import querysheet.batch.StringTableBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+public class ShardedUpload {
+
+    private static final String INDEX_SUFFIX = "_index";
+
+    private static Logger logger = LoggerFactory.getLogger(ShardedUpload.class);
+
+    private final GoogleAPI google;
+
+    private final ExecutorService executor;
+
+    public ShardedUpload(GoogleAPI google, ExecutorService executor) {
+        this.google = google;
+        this.executor = executor;
+    }
+
+    public void upload(String key, String worksheet, SpreadsheetBatch batch, int shardRows, BatchOptions[] options) {
+        List<ShardBatch> shards = split(batch, shardRows);
+        UploadGroup uploads = new UploadGroup(executor);
+
+        for (int i = 0; i < shards.size(); i++) {
+            uploads.submit(new GapiUpload(google, key, shardName(worksheet, i), shards.get(i), options));
+        }
+
+        uploads.await();
+
+        List<String> stale = staleShards(previousIndex(key, worksheet), worksheet, shards.size());
+
+        google.spreadsheet(key).worksheet(worksheet + INDEX_SUFFIX).batch(index(worksheet, shards), BatchOptions.SHRINK);
+
+        for (String shard : stale) {
+            google.spreadsheet(key).worksheet(shard).batch(new StringTableBatch(new String[][]{{""}}), BatchOptions.SHRINK);
+        }
+        if (!stale.isEmpty()) {
+            logger.info(String.format("cleared %d stale shards, spreadsheet=%s, worksheet=%s", stale.size(), key, worksheet));
+        }
+
+        logger.info(String.format("sharded %d rows into %d worksheets, spreadsheet=%s, worksheet=%s", batch.rows() - 1,
+                shards.size(), key, worksheet));
+    }
+
+    static List<String> staleShards(List<Map<String, String>> previousIndex, String worksheet, int shards) {
+        List<String> stale = new ArrayList<>();
+
+        for (Map<String, String> row : previousIndex) {
+            String shard = row.get("worksheet");
+
+            if (shard == null || !shard.startsWith(worksheet + "_")) {
+                continue;
+            }
+
+            try {
+                if (Integer.parseInt(shard.substring(worksheet.length() + 1)) > shards) {
+                    stale.add(shard);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        return stale;
+    }
+
+    private List<Map<String, String>> previousIndex(String key, String worksheet) {
+        try {
+            return google.spreadsheet(key).worksheet(worksheet + INDEX_SUFFIX).asMap();
+        } catch (RuntimeException e) {
+            logger.warn(String.format("could not read previous shard index, stale shards are kept: worksheet=%s, error=%s",
+                    worksheet, e.getMessage()));
+            return new ArrayList<>();
+        }
+    }
+
+    public static int shardRows(int cells, int cols) {
+        return Math.max(1, cells / Math.max(1, cols) - 1);
+    }
+
+    private List<ShardBatch> split(SpreadsheetBatch batch, int shardRows) {
+        List<ShardBatch> shards = new ArrayList<>();
+        int dataRows = batch.rows() - 1;
+        int row = 0;
+
+        do {
+            int rows = Math.min(shardRows, dataRows - row);
+            shards.add(new ShardBatch(batch, row + 2, rows));
+            row += rows;
+        } while (row < dataRows);
+
+        return shards;
+    }
+
+    private SpreadsheetBatch index(String worksheet, List<ShardBatch> shards) {
+        String[][] table = new String[shards.size() + 1][];
+        table[0] = new String[]{"shard", "worksheet", "first_row", "last_row"};
+
+        for (int i = 0; i < shards.size(); i++) {
+            ShardBatch shard = shards.get(i);
+            table[i + 1] = new String[]{String.valueOf(i + 1), shardName(worksheet, i),
+                    String.valueOf(shard.getFirstRow() - 1), String.valueOf(shard.getLastRow() - 1)};
+        }
+
+        return new StringTableBatch(table);
+    }
+
+    private String shardName(String worksheet, int shard) {
+        return worksheet + "_" + (shard + 1);
+    }
+}
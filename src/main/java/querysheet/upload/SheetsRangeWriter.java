@@ -0,0 +1,453 @@
+package querysheet.upload;
+
+import com.google.api.client.http.AbstractHttpContent;
+import com.google.api.client.http.GZipEncoding;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpMediaType;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.util.escape.CharEscapers;
+import querysheet.google.GoogleClients;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SheetsRangeWriter implements RangeWriter {
+
+    public static final String ROOT_URL = "https://sheets.googleapis.com/";
+
+    private static final String GRID_SIZE_FIELDS = "gridProperties(rowCount,columnCount)";
+
+    private final HttpRequestFactory requestFactory;
+
+    private final JsonFactory jsonFactory = GoogleClients.jsonFactory();
+
+    private final String rootUrl;
+
+    private Map<String, Integer> sheetIds = new ConcurrentHashMap<>();
+
+    public SheetsRangeWriter() {
+        this(GoogleClients.requestFactory(), ROOT_URL);
+    }
+
+    public SheetsRangeWriter(HttpRequestFactory requestFactory, String rootUrl) {
+        this.requestFactory = requestFactory;
+        this.rootUrl = rootUrl;
+    }
+
+    @Override
+    public void prepare(String key, String worksheet, int rows, int cols) {
+        Map<String, Object> properties = findSheet(key, worksheet);
+
+        if (properties == null) {
+            addSheet(key, worksheet, rows, cols);
+            return;
+        }
+
+        Map<String, Object> grid = map(properties.get("gridProperties"));
+        int currentRows = number(grid.get("rowCount"));
+        int currentCols = number(grid.get("columnCount"));
+
+        if (currentRows < rows || currentCols < cols) {
+            resize(key, worksheet, Math.max(rows, currentRows), Math.max(cols, currentCols));
+        }
+    }
+
+    @Override
+    public void write(String key, String worksheet, int firstRow, String[][] values) {
+        String range = range(worksheet, firstRow, values);
+
+        GenericUrl url = spreadsheetUrl(key, "/values/" + CharEscapers.escapeUriPath(range));
+        url.put("valueInputOption", "USER_ENTERED");
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("range", range);
+        body.put("majorDimension", "ROWS");
+        body.put("values", rows(values));
+
+        try {
+            execute(requestFactory.buildPutRequest(url, new JsonHttpContent(jsonFactory, body)));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void writeRows(String key, String worksheet, int firstRow, List<String[]> rows) {
+        int cols = rows.isEmpty() ? 1 : rows.get(0).length;
+        String range = range(worksheet, firstRow, firstRow + Math.max(rows.size(), 1) - 1, cols);
+        writeRanges(key, Collections.singletonMap(range, rows));
+    }
+
+    public void writeRanges(String key, Map<String, List<String[]>> ranges) {
+        HttpRequest request;
+        try {
+            request = requestFactory.buildPostRequest(spreadsheetUrl(key, "/values:batchUpdate"),
+                    new ValuesContent(jsonFactory, ranges));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        request.setEncoding(new GZipEncoding());
+
+        try {
+            execute(request);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean hasSheet(String key, String worksheet) {
+        return findSheet(key, worksheet) != null;
+    }
+
+    public List<String> readRow(String key, String worksheet, int row) {
+        String range = String.format("'%s'!%d:%d", worksheet.replace("'", "''"), row, row);
+
+        try {
+            GenericJson response = execute(requestFactory.buildGetRequest(
+                    spreadsheetUrl(key, "/values/" + CharEscapers.escapeUriPath(range))));
+
+            List<Object> rows = list(response.get("values"));
+            List<String> values = new ArrayList<>();
+
+            if (!rows.isEmpty()) {
+                for (Object value : list(rows.get(0))) {
+                    values.add(value == null ? "" : value.toString());
+                }
+            }
+
+            return values;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // same shape as gapi's asMap: one map per row keyed by the lowercase header, up to the first blank row
+    public List<Map<String, String>> readMaps(String key, String worksheet) {
+        String range = String.format("'%s'", worksheet.replace("'", "''"));
+
+        try {
+            GenericJson response = execute(requestFactory.buildGetRequest(
+                    spreadsheetUrl(key, "/values/" + CharEscapers.escapeUriPath(range))));
+
+            List<Object> rows = list(response.get("values"));
+            List<Map<String, String>> maps = new ArrayList<>();
+
+            if (rows.isEmpty()) {
+                return maps;
+            }
+
+            List<Object> header = list(rows.get(0));
+            for (int i = 1; i < rows.size(); i++) {
+                Map<String, String> map = new LinkedHashMap<>();
+                List<Object> row = list(rows.get(i));
+
+                for (int j = 0; j < header.size() && j < row.size(); j++) {
+                    String name = header.get(j) == null ? "" : header.get(j).toString().trim().toLowerCase();
+                    String value = row.get(j) == null ? "" : row.get(j).toString();
+
+                    if (!name.isEmpty() && !value.isEmpty()) {
+                        map.put(name, value);
+                    }
+                }
+
+                if (map.isEmpty()) {
+                    break;
+                }
+                maps.add(map);
+            }
+
+            return maps;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void resize(String key, String worksheet, int rows, int cols) {
+        Map<String, Object> grid = new HashMap<>();
+        grid.put("rowCount", rows);
+        grid.put("columnCount", cols);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("sheetId", sheetId(key, worksheet));
+        properties.put("gridProperties", grid);
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("properties", properties);
+        update.put("fields", GRID_SIZE_FIELDS);
+
+        batchUpdate(key, request("updateSheetProperties", update));
+    }
+
+    public void replaceWithCopy(String sourceKey, String key, String worksheet) {
+        List<Object> sourceSheets = sheets(sourceKey);
+        if (sourceSheets.isEmpty()) {
+            throw new RuntimeException("spreadsheet has no worksheets: " + sourceKey);
+        }
+
+        int sourceSheetId = number(map(map(sourceSheets.get(0)).get("properties")).get("sheetId"));
+        Map<String, Object> copied = copyTo(sourceKey, sourceSheetId, key);
+        int copiedSheetId = number(copied.get("sheetId"));
+
+        Map<String, Object> existing = findSheet(key, worksheet);
+        if (existing == null) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("sheetId", copiedSheetId);
+            properties.put("title", worksheet);
+
+            Map<String, Object> update = new HashMap<>();
+            update.put("properties", properties);
+            update.put("fields", "title");
+
+            batchUpdate(key, request("updateSheetProperties", update));
+            sheetIds.put(sheetKey(key, worksheet), copiedSheetId);
+            return;
+        }
+
+        int sheetId = number(existing.get("sheetId"));
+        List<Map<String, Object>> requests = new ArrayList<>();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("sheetId", sheetId);
+        properties.put("gridProperties", map(copied.get("gridProperties")));
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("properties", properties);
+        update.put("fields", GRID_SIZE_FIELDS);
+        requests.addAll(request("updateSheetProperties", update));
+
+        Map<String, Object> clear = new HashMap<>();
+        clear.put("range", gridRange(sheetId));
+        clear.put("fields", "userEnteredValue");
+        requests.addAll(request("updateCells", clear));
+
+        Map<String, Object> copyPaste = new HashMap<>();
+        copyPaste.put("source", gridRange(copiedSheetId));
+        copyPaste.put("destination", gridRange(sheetId));
+        copyPaste.put("pasteType", "PASTE_VALUES");
+        requests.addAll(request("copyPaste", copyPaste));
+
+        Map<String, Object> deleteSheet = new HashMap<>();
+        deleteSheet.put("sheetId", copiedSheetId);
+        requests.addAll(request("deleteSheet", deleteSheet));
+
+        batchUpdate(key, requests);
+    }
+
+    protected GenericJson execute(HttpRequest request) throws IOException {
+        request.setParser(new JsonObjectParser(jsonFactory));
+        return request.execute().parseAs(GenericJson.class);
+    }
+
+    protected GenericUrl spreadsheetUrl(String key, String path) {
+        return new GenericUrl(rootUrl + "v4/spreadsheets/" + key + path);
+    }
+
+    protected GenericJson batchUpdate(String key, List<Map<String, Object>> requests) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("requests", requests);
+
+        try {
+            return execute(requestFactory.buildPostRequest(spreadsheetUrl(key, ":batchUpdate"),
+                    new JsonHttpContent(jsonFactory, body)));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected String range(String worksheet, int firstRow, String[][] values) {
+        int cols = values.length == 0 ? 1 : values[0].length;
+        return range(worksheet, firstRow, firstRow + Math.max(values.length, 1) - 1, cols);
+    }
+
+    protected String range(String worksheet, int firstRow, int lastRow, int cols) {
+        return String.format("'%s'!A%d:%s%d", worksheet.replace("'", "''"), firstRow, columnName(cols), lastRow);
+    }
+
+    private void addSheet(String key, String worksheet, int rows, int cols) {
+        Map<String, Object> grid = new HashMap<>();
+        grid.put("rowCount", rows);
+        grid.put("columnCount", cols);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("title", worksheet);
+        properties.put("gridProperties", grid);
+
+        Map<String, Object> addSheet = new HashMap<>();
+        addSheet.put("properties", properties);
+
+        GenericJson response = batchUpdate(key, request("addSheet", addSheet));
+
+        List<Object> replies = list(response.get("replies"));
+        Map<String, Object> added = map(map(map(replies.get(0)).get("addSheet")).get("properties"));
+        sheetIds.put(sheetKey(key, worksheet), number(added.get("sheetId")));
+    }
+
+    private int sheetId(String key, String worksheet) {
+        Integer sheetId = sheetIds.get(sheetKey(key, worksheet));
+
+        if (sheetId != null) {
+            return sheetId;
+        }
+
+        Map<String, Object> properties = findSheet(key, worksheet);
+        if (properties == null) {
+            throw new RuntimeException(String.format("worksheet not found: spreadsheet=%s, worksheet=%s", key, worksheet));
+        }
+        return number(properties.get("sheetId"));
+    }
+
+    private Map<String, Object> findSheet(String key, String worksheet) {
+        for (Object sheet : sheets(key)) {
+            Map<String, Object> properties = map(map(sheet).get("properties"));
+
+            if (worksheet.equals(properties.get("title"))) {
+                sheetIds.put(sheetKey(key, worksheet), number(properties.get("sheetId")));
+                return properties;
+            }
+        }
+
+        return null;
+    }
+
+    private List<Object> sheets(String key) {
+        GenericUrl url = spreadsheetUrl(key, "");
+        url.put("fields", "sheets.properties");
+
+        try {
+            return list(execute(requestFactory.buildGetRequest(url)).get("sheets"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Map<String, Object> copyTo(String key, int sheetId, String destinationKey) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("destinationSpreadsheetId", destinationKey);
+
+        try {
+            return execute(requestFactory.buildPostRequest(spreadsheetUrl(key, "/sheets/" + sheetId + ":copyTo"),
+                    new JsonHttpContent(jsonFactory, body)));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Map<String, Object> gridRange(int sheetId) {
+        Map<String, Object> range = new HashMap<>();
+        range.put("sheetId", sheetId);
+        return range;
+    }
+
+    private List<Map<String, Object>> request(String name, Map<String, Object> body) {
+        Map<String, Object> request = new HashMap<>();
+        request.put(name, body);
+        return Collections.singletonList(request);
+    }
+
+    private List<List<String>> rows(String[][] values) {
+        List<List<String>> rows = new ArrayList<>(values.length);
+        for (String[] row : values) {
+            rows.add(Arrays.asList(row));
+        }
+        return rows;
+    }
+
+    private String sheetKey(String key, String worksheet) {
+        return key + "!" + worksheet;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Object value) {
+        return value == null ? new HashMap<String, Object>() : (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object value) {
+        return value == null ? new ArrayList<Object>() : (List<Object>) value;
+    }
+
+    private static int number(Object value) {
+        return value == null ? 0 : ((Number) value).intValue();
+    }
+
+    private static class ValuesContent extends AbstractHttpContent {
+
+        private final JsonFactory jsonFactory;
+
+        private final Map<String, List<String[]>> ranges;
+
+        private ValuesContent(JsonFactory jsonFactory, Map<String, List<String[]>> ranges) {
+            super(new HttpMediaType(Json.MEDIA_TYPE));
+            this.jsonFactory = jsonFactory;
+            this.ranges = ranges;
+        }
+
+        @Override
+        public long getLength() {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            JsonGenerator generator = jsonFactory.createJsonGenerator(out, getCharset());
+
+            generator.writeStartObject();
+            generator.writeFieldName("valueInputOption");
+            generator.writeString("USER_ENTERED");
+            generator.writeFieldName("data");
+            generator.writeStartArray();
+
+            for (Map.Entry<String, List<String[]>> range : ranges.entrySet()) {
+                generator.writeStartObject();
+                generator.writeFieldName("range");
+                generator.writeString(range.getKey());
+                generator.writeFieldName("majorDimension");
+                generator.writeString("ROWS");
+                generator.writeFieldName("values");
+                generator.writeStartArray();
+
+                for (String[] row : range.getValue()) {
+                    generator.writeStartArray();
+                    for (String value : row) {
+                        generator.writeString(value);
+                    }
+                    generator.writeEndArray();
+                }
+
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.flush();
+        }
+    }
+
+    public static String columnName(int column) {
+        StringBuilder name = new StringBuilder();
+
+        while (column > 0) {
+            int remainder = (column - 1) % 26;
+            name.insert(0, (char) ('A' + remainder));
+            column = (column - 1) / 26;
+        }
+
+        return name.toString();
+    }
+}
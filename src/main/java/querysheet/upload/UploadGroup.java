@@ -0,0 +1,46 @@
+package querysheet.upload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class UploadGroup {
+
+    private final ExecutorService executor;
+
+    private List<Future<?>> uploads = new ArrayList<>();
+
+    public UploadGroup(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void submit(Callable<?> upload) {
+        uploads.add(executor.submit(upload));
+    }
+
+    public void await() {
+        RuntimeException failure = null;
+
+        for (Future<?> upload : uploads) {
+            try {
+                upload.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        uploads.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -1,21 +1,278 @@
 package querysheet.utils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Setup {
 
+	public static final String DEFAULT_DATASOURCE = "default";
+
+	private static final String DEFAULT_REPLICA_ROUTING = "ROUND_ROBIN";
+
+	private static final long DEFAULT_ROW_STORE_MEMORY = 256L * 1024 * 1024;
+
+	private static final long DEFAULT_MEMORY_WAIT = 10 * 60 * 1000;
+
+	private static final int DEFAULT_SHARD_CELLS = 2000000;
+
+	private static final int DEFAULT_UPLOAD_THREADS = 4;
+
+	private static final int DEFAULT_CHUNK_ROWS = 5000;
+
+	private static final int DEFAULT_UPLOAD_IN_FLIGHT = 4;
+
+	private static final int DEFAULT_UPLOAD_RETRIES = 3;
+
+	private static final long DEFAULT_REQUEST_BYTES = 8L * 1024 * 1024;
+
+	private static final int DEFAULT_HTTP_CONNECTIONS = 20;
+
+	private static final int DEFAULT_HTTP_SOCKET_BUFFER = 64 * 1024;
+
+	private static final int DEFAULT_HTTP_KEEP_ALIVE = 30 * 1000;
+
+	private static final long DEFAULT_TOKEN_REFRESH_MARGIN = 5 * 60 * 1000;
+
+	private static final long DEFAULT_STATUS_FLUSH = 60 * 1000;
+
+	private static final long DEFAULT_CHECKPOINT_FRESHNESS = 12 * 60 * 60 * 1000;
+
+	private static final int DEFAULT_QUERY_WORKERS = 1;
+
+	private static final long DEFAULT_DEADLINE = 0;
+
+	private static final int DEFAULT_QUERY_TIMEOUT = 0;
+
+	private static final int DEFAULT_STATEMENT_CACHE = 32;
+
+	private static final int DEFAULT_PREPARE_THRESHOLD = 1;
+
+	private static final long DEFAULT_OUTBOX_WAIT = 30 * 60 * 1000;
+
+	private static final long DEFAULT_OUTBOX_RETRY_WAIT = 5 * 1000;
+
 	public static String getJdbcUrl() {
-		return String.format("jdbc:postgresql://%s:%s/%s", System.getenv("QS_HOST"), System.getenv("QS_PORT"),
-				System.getenv("QS_DBNAME"));
+		return getJdbcUrl(DEFAULT_DATASOURCE);
 	}
 
 	public static String getUser() {
-		return System.getenv("QS_USER");
+		return getUser(DEFAULT_DATASOURCE);
 	}
 	
 	public static String getPassword() {
-		return System.getenv("QS_PASSWORD");
+		return getPassword(DEFAULT_DATASOURCE);
+	}
+
+	public static boolean hasDataSource(String source) {
+		return DEFAULT_DATASOURCE.equals(source) || getDataSourceEnv(source, "HOST") != null;
+	}
+
+	public static String getJdbcUrl(String source) {
+		return jdbcUrl(getDataSourceEnv(source, "HOST"), getDataSourceEnv(source, "PORT"), getDataSourceEnv(source, "DBNAME"));
+	}
+
+	public static String getUser(String source) {
+		return getDataSourceEnv(source, "USER");
+	}
+
+	public static String getPassword(String source) {
+		return getDataSourceEnv(source, "PASSWORD");
+	}
+
+	public static List<String> getReplicaUrls(String source) {
+		List<String> urls = new ArrayList<String>();
+		String replicas = getDataSourceEnv(source, "REPLICAS");
+
+		if (replicas == null) {
+			return urls;
+		}
+
+		for (String replica : replicas.split(",")) {
+			replica = replica.trim();
+			if (replica.isEmpty()) {
+				continue;
+			}
+
+			String[] hostPort = replica.split(":", 2);
+			String port = hostPort.length > 1 ? hostPort[1] : getDataSourceEnv(source, "PORT");
+			urls.add(jdbcUrl(hostPort[0], port, getDataSourceEnv(source, "DBNAME")));
+		}
+
+		return urls;
+	}
+
+	public static int getPoolSize(String source) {
+		return getInt(dataSourceVariable(source, "POOL"), getQueryWorkers());
+	}
+
+	public static String getReplicaRouting(String source) {
+		String routing = getDataSourceEnv(source, "ROUTING");
+		return routing == null || routing.isEmpty() ? DEFAULT_REPLICA_ROUTING : routing.toUpperCase();
+	}
+
+	private static String jdbcUrl(String host, String port, String dbname) {
+		return String.format("jdbc:postgresql://%s:%s/%s", host, port, dbname);
+	}
+
+	private static String getDataSourceEnv(String source, String name) {
+		return System.getenv(dataSourceVariable(source, name));
+	}
+
+	private static String dataSourceVariable(String source, String name) {
+		if (DEFAULT_DATASOURCE.equals(source)) {
+			return "QS_" + name;
+		}
+		return "QS_" + source.toUpperCase().replaceAll("[^A-Z0-9]", "_") + "_" + name;
 	}
 
 	public static String getSetupSpreadsheetKey() {
 		return System.getenv("QS_SETUP_SPREADSHEET_KEY");
 	}
+
+	public static String getClientId() {
+		return System.getenv("QS_CLIENT_ID");
+	}
+
+	public static String getClientSecret() {
+		return System.getenv("QS_CLIENT_SECRET");
+	}
+
+	public static String getRefreshToken() {
+		return System.getenv("QS_REFRESH_TOKEN");
+	}
+
+	public static boolean hasClientCredentials() {
+		return getClientId() != null && getClientSecret() != null && getRefreshToken() != null;
+	}
+
+	public static String getTokenStore() {
+		String path = System.getenv("QS_TOKEN_STORE");
+		return path == null || path.isEmpty() ? System.getProperty("user.home") + "/.querysheet/tokens" : path;
+	}
+
+	public static String getTokenKey() {
+		String key = System.getenv("QS_TOKEN_KEY");
+		return key == null || key.isEmpty() ? getClientSecret() : key;
+	}
+
+	public static String getSetupCache() {
+		String path = System.getenv("QS_SETUP_CACHE");
+		return path == null || path.isEmpty() ? System.getProperty("user.home") + "/.querysheet/setup" : path;
+	}
+
+	public static long getTokenRefreshMargin() {
+		return getLong("QS_TOKEN_REFRESH_MARGIN", DEFAULT_TOKEN_REFRESH_MARGIN);
+	}
+
+	public static long getRowStoreMemory() {
+		return getLong("QS_ROW_STORE_MEMORY", DEFAULT_ROW_STORE_MEMORY);
+	}
+
+	public static long getMemoryBudget() {
+		return getLong("QS_MEMORY_BUDGET", Runtime.getRuntime().maxMemory() / 10 * 6);
+	}
+
+	public static long getMemoryWait() {
+		return getLong("QS_MEMORY_WAIT", DEFAULT_MEMORY_WAIT);
+	}
+
+	public static int getShardCells() {
+		return getInt("QS_SHARD_CELLS", DEFAULT_SHARD_CELLS);
+	}
+
+	public static int getUploadThreads() {
+		return getInt("QS_UPLOAD_THREADS", DEFAULT_UPLOAD_THREADS);
+	}
+
+	public static int getChunkRows() {
+		return getInt("QS_CHUNK_ROWS", DEFAULT_CHUNK_ROWS);
+	}
+
+	public static int getUploadInFlight() {
+		return getInt("QS_UPLOAD_IN_FLIGHT", DEFAULT_UPLOAD_IN_FLIGHT);
+	}
+
+	public static int getUploadRetries() {
+		return getInt("QS_UPLOAD_RETRIES", DEFAULT_UPLOAD_RETRIES);
+	}
+
+	public static long getRequestBytes() {
+		return getLong("QS_REQUEST_BYTES", DEFAULT_REQUEST_BYTES);
+	}
+
+	public static int getHttpConnections() {
+		return getInt("QS_HTTP_CONNECTIONS", DEFAULT_HTTP_CONNECTIONS);
+	}
+
+	public static int getHttpSocketBuffer() {
+		return getInt("QS_HTTP_SOCKET_BUFFER", DEFAULT_HTTP_SOCKET_BUFFER);
+	}
+
+	public static int getHttpKeepAlive() {
+		return getInt("QS_HTTP_KEEP_ALIVE", DEFAULT_HTTP_KEEP_ALIVE);
+	}
+
+	public static String getCheckpoints() {
+		String path = System.getenv("QS_CHECKPOINTS");
+		return path == null || path.isEmpty() ? System.getProperty("user.home") + "/.querysheet/checkpoints" : path;
+	}
+
+	public static long getCheckpointFreshness() {
+		return getLong("QS_CHECKPOINT_FRESHNESS", DEFAULT_CHECKPOINT_FRESHNESS);
+	}
+
+	public static String getDurations() {
+		String path = System.getenv("QS_DURATIONS");
+		return path == null || path.isEmpty() ? System.getProperty("user.home") + "/.querysheet/durations" : path;
+	}
+
+	public static long getDeadline() {
+		return getLong("QS_DEADLINE", DEFAULT_DEADLINE);
+	}
+
+	public static int getQueryTimeout() {
+		return getInt("QS_QUERY_TIMEOUT", DEFAULT_QUERY_TIMEOUT);
+	}
+
+	public static int getStatementCache() {
+		return getInt("QS_STATEMENT_CACHE", DEFAULT_STATEMENT_CACHE);
+	}
+
+	public static int getPrepareThreshold() {
+		return getInt("QS_PREPARE_THRESHOLD", DEFAULT_PREPARE_THRESHOLD);
+	}
+
+	public static boolean isConsistentSnapshot() {
+		return Boolean.parseBoolean(System.getenv("QS_CONSISTENT_SNAPSHOT"));
+	}
+
+	public static int getQueryWorkers() {
+		return getInt("QS_QUERY_WORKERS", DEFAULT_QUERY_WORKERS);
+	}
+
+	public static String getOutbox() {
+		String path = System.getenv("QS_OUTBOX");
+		return path == null || path.isEmpty() ? System.getProperty("user.home") + "/.querysheet/outbox" : path;
+	}
+
+	public static long getOutboxWait() {
+		return getLong("QS_OUTBOX_WAIT", DEFAULT_OUTBOX_WAIT);
+	}
+
+	public static long getOutboxRetryWait() {
+		return getLong("QS_OUTBOX_RETRY_WAIT", DEFAULT_OUTBOX_RETRY_WAIT);
+	}
+
+	public static long getStatusFlush() {
+		return getLong("QS_STATUS_FLUSH", DEFAULT_STATUS_FLUSH);
+	}
+
+	private static int getInt(String name, int defaultValue) {
+		return (int) getLong(name, defaultValue);
+	}
+
+	private static long getLong(String name, long defaultValue) {
+		String value = System.getenv(name);
+		return value == null || value.isEmpty() ? defaultValue : Long.parseLong(value);
+	}
 }
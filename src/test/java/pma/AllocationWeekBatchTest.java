@@ -6,6 +6,7 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.*;
 
@@ -62,6 +63,54 @@ public class AllocationWeekBatchTest {
         assertBatchRow(batch, 6, "Livre", "zeh", "Beegos", "0", "0", "0", "80");
     }
 
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final AllocationWeekBatch batch = new AllocationWeekBatchMock();
+        batch.load(new AllocationMockResultSet());
+
+        final String[][] expected = batch.getRange(1, batch.rows());
+        final AtomicBoolean consistent = new AtomicBoolean(true);
+        Thread[] readers = new Thread[8];
+
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < 500; n++) {
+                        for (int row = 1; row <= batch.rows(); row++) {
+                            if (!expected[row - 1][2].equals(batch.getValue(row, 3))) {
+                                consistent.set(false);
+                            }
+                        }
+                    }
+                }
+            };
+            readers[i].start();
+        }
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(consistent.get());
+    }
+
+    @Test
+    public void testRangeMatchesValues() throws ParseException {
+        AllocationWeekBatch batch = new AllocationWeekBatchMock();
+        batch.load(new AllocationMockResultSet());
+
+        String[][] range = batch.getRange(1, batch.rows());
+
+        assertEquals(batch.rows(), range.length);
+        for (int row = 1; row <= batch.rows(); row++) {
+            assertEquals(batch.cols(), range[row - 1].length);
+            for (int column = 1; column <= batch.cols(); column++) {
+                assertEquals(batch.getValue(row, column), range[row - 1][column - 1]);
+            }
+        }
+    }
+
     private void assertBatchRow(AllocationWeekBatch batch, int row, String... columns) {
         for (int i = 0; i < columns.length; i++) {
             assertEquals(columns[i], batch.getValue(row, i + 1));
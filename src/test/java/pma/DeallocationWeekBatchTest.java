@@ -73,6 +73,22 @@ public class DeallocationWeekBatchTest {
 
     }
 
+    @Test
+    public void testRangeMatchesValues() throws ParseException {
+        DeallocationWeekBatch batch = new DeallocationWeekBatchMock();
+        batch.load(new AllocationMockResultSet());
+
+        String[][] range = batch.getRange(1, batch.rows());
+
+        assertEquals(batch.rows(), range.length);
+        for (int row = 1; row <= batch.rows(); row++) {
+            assertEquals(batch.cols(), range[row - 1].length);
+            for (int column = 1; column <= batch.cols(); column++) {
+                assertEquals(batch.getValue(row, column), range[row - 1][column - 1]);
+            }
+        }
+    }
+
     private void assertBatchRow(DeallocationWeekBatch batch, int row, String... columns) {
         for (int i = 0; i < columns.length; i++) {
             assertEquals(columns[i], batch.getValue(row, i + 1));
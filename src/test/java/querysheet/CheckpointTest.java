@@ -0,0 +1,129 @@
+package querysheet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import querysheet.batch.TableToSpreadsheetBatch;
+import querysheet.mock.MockResultSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CheckpointTest {
+
+    private File dir;
+
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("querysheet-checkpoint").toFile();
+    }
+
+    @After
+    public void after() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testResumesCompletedRows() {
+        Checkpoint checkpoint = new Checkpoint(dir, "setup-key", 60000);
+        checkpoint.record(row(0, "select 1"), "2x1-0000abcd", 150, 1, false);
+
+        Checkpoint resumed = new Checkpoint(dir, "setup-key", 60000);
+        Checkpoint.Entry entry = resumed.completed(row(0, "select 1"));
+
+        assertNotNull(entry);
+        assertEquals("2x1-0000abcd", entry.getFingerprint());
+        assertEquals(150, entry.getElapsed());
+        assertEquals(1, entry.getRows());
+        assertFalse(entry.isQueued());
+        assertNull(resumed.completed(row(1, "select 1")));
+        assertNull(new Checkpoint(dir, "other-key", 60000).completed(row(0, "select 1")));
+    }
+
+    @Test
+    public void testResumesQueuedRowsAsQueued() {
+        new Checkpoint(dir, "setup-key", 60000).record(row(0, "select 1"), "fp", 10, 1, true);
+
+        assertTrue(new Checkpoint(dir, "setup-key", 60000).completed(row(0, "select 1")).isQueued());
+    }
+
+    @Test
+    public void testNeverResumesStatements() {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", "create table staging as select 1");
+        SetupRow statement = new SetupRow(0, values);
+
+        new Checkpoint(dir, "setup-key", 60000).record(statement, "", 10, 0, false);
+
+        assertNull(new Checkpoint(dir, "setup-key", 60000).completed(statement));
+    }
+
+    @Test
+    public void testHashesResolvedParams() {
+        assertEquals(Checkpoint.hash(row(0, "select ?, ?", "1,2")), Checkpoint.hash(row(0, "select ?, ?", " 1 , 2")));
+        assertFalse(Checkpoint.hash(row(0, "select ?, ?", "1,2")).equals(Checkpoint.hash(row(0, "select ?, ?", "1,3"))));
+        assertFalse(Checkpoint.hash(row(0, "select ?", "1")).equals(Checkpoint.hash(row(0, "select ?", "'1'"))));
+    }
+
+    @Test
+    public void testRerunsChangedQuery() {
+        new Checkpoint(dir, "setup-key", 60000).record(row(0, "select 1"), "fp", 10, 1, false);
+
+        assertNull(new Checkpoint(dir, "setup-key", 60000).completed(row(0, "select 2")));
+    }
+
+    @Test
+    public void testRerunsStaleRows() throws InterruptedException {
+        new Checkpoint(dir, "setup-key", 60000).record(row(0, "select 1"), "fp", 10, 1, false);
+        Thread.sleep(20);
+
+        assertNull(new Checkpoint(dir, "setup-key", 10).completed(row(0, "select 1")));
+    }
+
+    @Test
+    public void testClearForgetsCompletedRows() {
+        Checkpoint checkpoint = new Checkpoint(dir, "setup-key", 60000);
+        checkpoint.record(row(0, "select 1"), "fp", 10, 1, false);
+        checkpoint.clear();
+
+        assertNull(checkpoint.completed(row(0, "select 1")));
+        assertNull(new Checkpoint(dir, "setup-key", 60000).completed(row(0, "select 1")));
+    }
+
+    @Test
+    public void testFingerprintTracksContent() {
+        assertEquals(Checkpoint.fingerprint(batch("joao")), Checkpoint.fingerprint(batch("joao")));
+        assertNotEquals(Checkpoint.fingerprint(batch("joao")), Checkpoint.fingerprint(batch("pedro")));
+    }
+
+    private SetupRow row(int index, String query) {
+        return row(index, query, null);
+    }
+
+    private SetupRow row(int index, String query, String params) {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", query);
+        values.put("spreadsheet", "sheet-key");
+        values.put("worksheet", "Data");
+        values.put("params", params);
+        return new SetupRow(index, values);
+    }
+
+    private TableToSpreadsheetBatch batch(String name) {
+        MockResultSet rs = new MockResultSet();
+        rs.addRow();
+        rs.addString("name", name);
+
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch();
+        batch.load(rs);
+        return batch;
+    }
+}
@@ -0,0 +1,65 @@
+package querysheet;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class QueryParamsTest {
+
+    @Test
+    public void testLiterals() {
+        Object[] values = QueryParams.parse("42, -1.5, 'a, b', 'it''s', null, true, 2014-03-05, Ninjas", date("2014-01-01"));
+
+        assertEquals(8, values.length);
+        assertEquals(42L, values[0]);
+        assertEquals(new BigDecimal("-1.5"), values[1]);
+        assertEquals("a, b", values[2]);
+        assertEquals("it's", values[3]);
+        assertNull(values[4]);
+        assertEquals(Boolean.TRUE, values[5]);
+        assertEquals(new java.sql.Date(date("2014-03-05").getTime()), values[6]);
+        assertEquals("Ninjas", values[7]);
+    }
+
+    @Test
+    public void testComputedDates() {
+        Date thursday = date("2014-03-06");
+        Object[] values = QueryParams.parse("today(), week_start(), week_start() - 7, TODAY()+1", thursday);
+
+        assertEquals(date("2014-03-06"), new Date(((java.sql.Date) values[0]).getTime()));
+        assertEquals(date("2014-03-03"), new Date(((java.sql.Date) values[1]).getTime()));
+        assertEquals(date("2014-02-24"), new Date(((java.sql.Date) values[2]).getTime()));
+        assertEquals(date("2014-03-07"), new Date(((java.sql.Date) values[3]).getTime()));
+    }
+
+    @Test
+    public void testWeekStartOnSunday() {
+        Object[] values = QueryParams.parse("week_start()", date("2014-03-09"));
+
+        assertEquals(date("2014-03-03"), new Date(((java.sql.Date) values[0]).getTime()));
+    }
+
+    @Test
+    public void testBlankParams() {
+        assertEquals(0, QueryParams.parse(null, new Date()).length);
+        assertEquals(0, QueryParams.parse("  ", new Date()).length);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnterminatedQuote() {
+        QueryParams.parse("'open", new Date());
+    }
+
+    private Date date(String value) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").parse(value);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package querysheet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RowGraphTest {
+
+    @Test
+    public void testRunsDependenciesFirst() throws InterruptedException {
+        SetupRow staging = row(0, "staging", null);
+        SetupRow report = row(1, null, "staging, 4");
+        SetupRow other = row(2, null, null);
+        List<SetupRow> rows = Arrays.asList(report, other, staging);
+
+        RowGraph graph = new RowGraph(rows);
+
+        assertSame(other, graph.take());
+        assertSame(staging, graph.take());
+        graph.done(other, true);
+        graph.done(staging, true);
+
+        assertSame(report, graph.take());
+        graph.done(report, true);
+        assertNull(graph.take());
+    }
+
+    @Test
+    public void testIndependentRowsAreReadyTogether() throws InterruptedException {
+        SetupRow staging = row(0, "staging", null);
+        SetupRow first = row(1, null, "staging");
+        SetupRow second = row(2, null, "staging");
+        RowGraph graph = new RowGraph(Arrays.asList(staging, first, second));
+
+        graph.done(graph.take(), true);
+
+        assertSame(first, graph.take());
+        assertSame(second, graph.take());
+    }
+
+    @Test
+    public void testFailedRowSkipsDependents() throws InterruptedException {
+        SetupRow staging = row(0, "staging", null);
+        SetupRow report = row(1, "report", "staging");
+        SetupRow summary = row(2, null, "report");
+        SetupRow other = row(3, null, null);
+        RowGraph graph = new RowGraph(Arrays.asList(staging, report, summary, other));
+
+        SetupRow failed = graph.take();
+        assertSame(staging, failed);
+        assertEquals(Arrays.asList(report, summary), graph.done(failed, false));
+
+        assertSame(other, graph.take());
+        graph.done(other, true);
+        assertNull(graph.take());
+    }
+
+    @Test
+    public void testTakeWaitsForRunningDependencies() throws InterruptedException {
+        final SetupRow staging = row(0, "staging", null);
+        SetupRow report = row(1, null, "staging");
+        final RowGraph graph = new RowGraph(Arrays.asList(staging, report));
+        final CountDownLatch started = new CountDownLatch(1);
+
+        assertSame(staging, graph.take());
+
+        final List<SetupRow> taken = new ArrayList<>();
+        Thread worker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    started.countDown();
+                    taken.add(graph.take());
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+        worker.start();
+        started.await(1, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertTrue(taken.isEmpty());
+
+        graph.done(staging, true);
+        worker.join(1000);
+        assertEquals(Arrays.asList(report), taken);
+    }
+
+    @Test
+    public void testRejectsCycles() {
+        try {
+            new RowGraph(Arrays.asList(row(0, "a", "c"), row(1, "b", "a"), row(2, "c", "b"), row(3, null, null)));
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("dependency cycle between rows [2, 3, 4]", e.getMessage());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRejectsUnknownDependencies() {
+        new RowGraph(Arrays.asList(row(0, "a", "missing")));
+    }
+
+    @Test
+    public void testRejectsTempStagingWithSeveralWorkers() {
+        List<SetupRow> temp = Arrays.asList(statement(0, "drop table if exists s; create temporary table s as select 1"),
+                row(1, null, "2"));
+        List<SetupRow> unlogged = Arrays.asList(statement(0, "create unlogged table s as select 1"), row(1, null, "2"));
+
+        RowGraph.checkSessionLocal(temp, 1);
+        RowGraph.checkSessionLocal(unlogged, 2);
+
+        try {
+            RowGraph.checkSessionLocal(temp, 2);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("row 2 creates a TEMP table"));
+        }
+    }
+
+    @Test
+    public void testSnapshotRejectsWritesAcrossWorkers() {
+        List<SetupRow> statements = Arrays.asList(query(0, null, null), statement(1, "insert into s select 1"));
+        List<SetupRow> chained = Arrays.asList(query(0, "a", null), query(1, null, "a"));
+        List<SetupRow> independent = Arrays.asList(query(0, "a", null), query(1, "b", null));
+
+        RowGraph.checkSnapshot(statements, 1);
+        RowGraph.checkSnapshot(chained, 1);
+        RowGraph.checkSnapshot(independent, 2);
+
+        try {
+            RowGraph.checkSnapshot(statements, 2);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("row 3 is a statement"));
+        }
+
+        try {
+            RowGraph.checkSnapshot(chained, 2);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("row 3 depends on other rows"));
+        }
+    }
+
+    private SetupRow row(int index, String id, String dependsOn) {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", "select " + index);
+        values.put("id", id);
+        values.put("depends_on", dependsOn);
+        return new SetupRow(index, values);
+    }
+
+    private SetupRow query(int index, String id, String dependsOn) {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", "select " + index);
+        values.put("spreadsheet", "key");
+        values.put("worksheet", "sheet" + index);
+        values.put("id", id);
+        values.put("depends_on", dependsOn);
+        return new SetupRow(index, values);
+    }
+
+    private SetupRow statement(int index, String query) {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", query);
+        return new SetupRow(index, values);
+    }
+}
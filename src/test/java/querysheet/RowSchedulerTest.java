@@ -0,0 +1,117 @@
+package querysheet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RowSchedulerTest {
+
+    private File dir;
+
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("querysheet-durations").toFile();
+    }
+
+    @After
+    public void after() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testLongestRowsFirst() {
+        DurationHistory durations = new DurationHistory(dir, "setup-key");
+        List<SetupRow> rows = rows(row(0, "fast", null), row(1, "slow", null), row(2, "medium", null));
+        durations.record(rows.get(0), 10, 5);
+        durations.record(rows.get(1), 1000, 200);
+        durations.record(rows.get(2), 100, 50);
+
+        assertEquals(Arrays.asList(1, 2, 0), indexes(new RowScheduler(durations, true).order(rows)));
+    }
+
+    @Test
+    public void testPriorityAndUnmeasuredRowsGoFirst() {
+        DurationHistory durations = new DurationHistory(dir, "setup-key");
+        List<SetupRow> rows = rows(row(0, "slow", null), row(1, "dashboard", "10"), row(2, "new", ""),
+                row(3, "other", "x"));
+        durations.record(rows.get(0), 1000, 0);
+        durations.record(rows.get(1), 10, 0);
+        durations.record(rows.get(3), 1, 0);
+
+        assertEquals(Arrays.asList(1, 2, 0, 3), indexes(new RowScheduler(durations, true).order(rows)));
+    }
+
+    @Test
+    public void testSingleWorkerKeepsSheetOrderBelowPriority() {
+        DurationHistory durations = new DurationHistory(dir, "setup-key");
+        List<SetupRow> rows = rows(row(0, "fast", null), row(1, "slow", null), row(2, "dashboard", "10"),
+                row(3, "new", null));
+        durations.record(rows.get(0), 10, 5);
+        durations.record(rows.get(1), 1000, 200);
+
+        assertEquals(Arrays.asList(2, 0, 1, 3), indexes(new RowScheduler(durations, false).order(rows)));
+    }
+
+    @Test
+    public void testDurationsPersistAcrossRuns() {
+        DurationHistory durations = new DurationHistory(dir, "setup-key");
+        durations.record(row(0, "select 1", null), 100, 20);
+        durations.record(row(0, "select 1", null), 300, 40);
+        durations.save();
+
+        DurationHistory loaded = new DurationHistory(dir, "setup-key");
+        assertEquals(Long.valueOf(230), loaded.estimate(row(5, "select 1", null)));
+        assertNull(loaded.estimate(row(0, "select 2", null)));
+    }
+
+    @Test
+    public void testRelativeParamsKeepOneDurationHistory() {
+        DurationHistory durations = new DurationHistory(dir, "setup-key");
+        Map<String, String> values = new HashMap<>();
+        values.put("query", "select * from t where day = ?");
+        values.put("params", "today()");
+        durations.record(new SetupRow(0, values), 100, 20);
+
+        Map<String, String> changed = new HashMap<>(values);
+        changed.put("params", "today() - 1");
+
+        assertEquals(Long.valueOf(120), durations.estimate(new SetupRow(0, values)));
+        assertNull(durations.estimate(new SetupRow(0, changed)));
+        assertEquals(Checkpoint.definitionHash(new SetupRow(0, values)), Checkpoint.definitionHash(new SetupRow(3, values)));
+    }
+
+    private SetupRow row(int index, String query, String priority) {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", query);
+        values.put("spreadsheet", "sheet-key");
+        values.put("worksheet", "Data");
+        values.put("priority", priority);
+        return new SetupRow(index, values);
+    }
+
+    private List<SetupRow> rows(SetupRow... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+
+    private List<Integer> indexes(List<SetupRow> rows) {
+        List<Integer> indexes = new ArrayList<>();
+        for (SetupRow row : rows) {
+            indexes.add(row.getIndex());
+        }
+        return indexes;
+    }
+}
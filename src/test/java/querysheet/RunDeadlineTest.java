@@ -0,0 +1,38 @@
+package querysheet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RunDeadlineTest {
+
+    @Test
+    public void testNoDeadlineFitsEverything() {
+        RunDeadline deadline = new RunDeadline(RunDeadline.NONE);
+
+        assertTrue(deadline.fits(null));
+        assertTrue(deadline.fits(Long.MAX_VALUE / 2));
+        assertFalse(deadline.passed());
+    }
+
+    @Test
+    public void testDefersRowsLongerThanRemainingTime() {
+        RunDeadline deadline = new RunDeadline(60000);
+
+        assertTrue(deadline.fits(null));
+        assertTrue(deadline.fits(1000L));
+        assertFalse(deadline.fits(120000L));
+        assertTrue(deadline.remaining() <= 60000);
+    }
+
+    @Test
+    public void testPassedDeadlineFitsNothing() throws InterruptedException {
+        RunDeadline deadline = new RunDeadline(1);
+        Thread.sleep(10);
+
+        assertTrue(deadline.passed());
+        assertFalse(deadline.fits(null));
+        assertFalse(deadline.fits(0L));
+        assertEquals(0, deadline.remaining());
+    }
+}
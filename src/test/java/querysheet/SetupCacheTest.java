@@ -0,0 +1,71 @@
+package querysheet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SetupCacheTest {
+
+    private File dir;
+
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("querysheet-setup").toFile();
+    }
+
+    @After
+    public void after() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testReturnsRowsForSameModifiedTime() {
+        SetupCache cache = new SetupCache(dir);
+        cache.put("setup-key", 1000L, rows());
+
+        List<Map<String, String>> cached = new SetupCache(dir).get("setup-key", 1000L);
+        assertEquals(2, cached.size());
+        assertEquals("select * from hours", cached.get(0).get("query"));
+        assertEquals("people", cached.get(1).get("worksheet"));
+    }
+
+    @Test
+    public void testMissesOnNewerModifiedTime() {
+        SetupCache cache = new SetupCache(dir);
+        assertNull(cache.get("setup-key", 1000L));
+
+        cache.put("setup-key", 1000L, rows());
+        assertNull(cache.get("setup-key", 2000L));
+        assertNull(cache.get("other-key", 1000L));
+    }
+
+    @Test
+    public void testIgnoresCorruptCache() throws IOException {
+        Files.write(new File(dir, "setup-key.json").toPath(), "{not json".getBytes("UTF-8"));
+        assertNull(new SetupCache(dir).get("setup-key", 1000L));
+    }
+
+    private List<Map<String, String>> rows() {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (String worksheet : new String[]{"hours", "people"}) {
+            Map<String, String> row = new HashMap<>();
+            row.put("query", "select * from " + worksheet);
+            row.put("worksheet", worksheet);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
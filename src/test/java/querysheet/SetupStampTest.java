@@ -0,0 +1,120 @@
+package querysheet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SetupStampTest {
+
+    public class FakeStamp extends SetupStamp {
+
+        private LinkedList<Long> times;
+
+        private List<Boolean> own = new ArrayList<>();
+
+        public FakeStamp(Long modified, Long... times) {
+            super("setup-key", modified);
+            this.times = new LinkedList<>(Arrays.asList(times));
+        }
+
+        @Override
+        protected Long modified(boolean own) {
+            this.own.add(own);
+            return times.removeFirst();
+        }
+    }
+
+    public class NullStatusWriter extends StatusWriter {
+
+        private int writes = 0;
+
+        public NullStatusWriter() {
+            super(null, null, "Setup", Long.MAX_VALUE);
+        }
+
+        @Override
+        protected void write(Map<Integer, String[]> rows) {
+            writes++;
+        }
+    }
+
+    @Test
+    public void testFollowsOwnStatusWrites() {
+        FakeStamp stamp = new FakeStamp(1000L, 1000L, 2000L, 2000L, 3000L, 3000L);
+        NullStatusWriter statuses = new NullStatusWriter();
+        statuses.setStamp(stamp);
+
+        statuses.success(row(0), new Date(), 10, 1);
+        statuses.flush();
+        statuses.flush();
+        statuses.success(row(1), new Date(), 10, 1);
+        statuses.flush();
+
+        assertEquals(2, statuses.writes);
+        assertEquals(Long.valueOf(3000L), stamp.confirmed());
+        assertEquals(Arrays.asList(false, true, false, true, false), stamp.own);
+    }
+
+    @Test
+    public void testEditBetweenWritesDropsStamp() {
+        FakeStamp stamp = new FakeStamp(1000L, 1500L);
+        NullStatusWriter statuses = new NullStatusWriter();
+        statuses.setStamp(stamp);
+
+        statuses.success(row(0), new Date(), 10, 1);
+        statuses.flush();
+
+        assertEquals(1, statuses.writes);
+        assertNull(stamp.confirmed());
+        assertTrue(stamp.times.isEmpty());
+    }
+
+    @Test
+    public void testEditAfterLastWriteDropsStamp() {
+        FakeStamp stamp = new FakeStamp(1000L, 1000L, 2000L, 2500L);
+        NullStatusWriter statuses = new NullStatusWriter();
+        statuses.setStamp(stamp);
+
+        statuses.success(row(0), new Date(), 10, 1);
+        statuses.flush();
+
+        assertNull(stamp.confirmed());
+    }
+
+    @Test
+    public void testForeignLastModifierDropsStamp() {
+        FakeStamp stamp = new FakeStamp(1000L, 1000L, null);
+        NullStatusWriter statuses = new NullStatusWriter();
+        statuses.setStamp(stamp);
+
+        statuses.success(row(0), new Date(), 10, 1);
+        statuses.flush();
+
+        assertNull(stamp.confirmed());
+        assertTrue(stamp.times.isEmpty());
+    }
+
+    @Test
+    public void testUnknownModifiedTimeNeverStamps() {
+        FakeStamp stamp = new FakeStamp(null);
+
+        stamp.beforeWrite();
+        stamp.afterWrite();
+
+        assertNull(stamp.confirmed());
+    }
+
+    private SetupRow row(int index) {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", "select 1");
+        return new SetupRow(index, values);
+    }
+}
@@ -0,0 +1,77 @@
+package querysheet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SharedFragmentsTest {
+
+    @Test
+    public void testFindsReferencedFragments() {
+        SharedFragments shared = new SharedFragments(rows(
+                "active_allocations", "select * from allocations where active",
+                "people_hours", "select * from hours"));
+
+        assertEquals(Arrays.asList("active_allocations"),
+                shared.referencedBy("select person from {{ Active_Allocations }} group by person"));
+        assertEquals(Collections.emptyList(), shared.referencedBy("select * from active_allocations"));
+        assertEquals(Collections.emptyList(), shared.referencedBy("select 1"));
+    }
+
+    @Test
+    public void testFragmentsComeAfterTheirDependencies() {
+        SharedFragments shared = new SharedFragments(rows(
+                "weekly", "select week, sum(hours) from {{active_allocations}} group by week",
+                "active_allocations", "select * from allocations where active"));
+
+        assertEquals(Arrays.asList("active_allocations", "weekly"),
+                shared.referencedBy("select * from {{weekly}} join {{active_allocations}} using (week)"));
+    }
+
+    @Test
+    public void testExpandsReferencesToTables() {
+        SharedFragments shared = new SharedFragments(rows("order", "select * from orders"));
+
+        assertEquals("select * from \"order\" o join order_items i on i.order_id = o.id",
+                shared.expand("select * from {{Order}} o join order_items i on i.order_id = o.id"));
+        assertEquals("select '{{x'", shared.expand("select '{{x'"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRejectsUnknownReferences() {
+        new SharedFragments(rows("weekly", "select 1")).referencedBy("select * from {{monthly}}");
+    }
+
+    @Test
+    public void testIgnoresBlankRows() {
+        assertTrue(new SharedFragments(rows("", "select 1", "empty", " ")).isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRejectsInvalidNames() {
+        new SharedFragments(rows("drop table x; --", "select 1"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRejectsCycles() {
+        new SharedFragments(rows("a_frag", "select * from {{b_frag}}", "b_frag", "select * from {{a_frag}}"));
+    }
+
+    private List<Map<String, String>> rows(String... values) {
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            Map<String, String> row = new HashMap<>();
+            row.put("name", values[i]);
+            row.put("query", values[i + 1]);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,155 @@
+package querysheet;
+
+import org.junit.Test;
+import querysheet.upload.SheetsRangeWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StatusWriterTest {
+
+    public class RecordingWriter extends SheetsRangeWriter {
+
+        private List<Map<String, String>> batches = new ArrayList<>();
+
+        private int headerReads = 0;
+
+        private boolean failing = false;
+
+        private boolean headerFailing = false;
+
+        public RecordingWriter() {
+            super(null, "http://localhost/");
+        }
+
+        @Override
+        public List<String> readRow(String key, String worksheet, int row) {
+            headerReads++;
+            if (headerFailing) {
+                throw new RuntimeException("unauthorized");
+            }
+            return Arrays.asList("status", "query", "spreadsheet", "worksheet", "rows");
+        }
+
+        @Override
+        public void writeRanges(String key, Map<String, List<String[]>> ranges) {
+            if (failing) {
+                throw new RuntimeException("quota");
+            }
+
+            Map<String, String> cells = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String[]>> range : ranges.entrySet()) {
+                cells.put(range.getKey(), range.getValue().get(0)[0]);
+            }
+            batches.add(cells);
+        }
+    }
+
+    @Test
+    public void testBuffersStatusesIntoOneBatch() {
+        RecordingWriter writer = new RecordingWriter();
+        StatusWriter statuses = new StatusWriter(writer, "setup-key", "Setup", Long.MAX_VALUE);
+
+        statuses.success(row(0), new Date(), 1500, 42);
+        statuses.error(row(1), new Date(), 30, new RuntimeException("relation \"x\" does not exist\n  Position: 15"));
+        statuses.flushIfDue();
+        assertTrue(writer.batches.isEmpty());
+        assertEquals(0, writer.headerReads);
+
+        statuses.flush();
+        assertEquals(1, writer.batches.size());
+        assertEquals(1, writer.headerReads);
+
+        Map<String, String> cells = writer.batches.get(0);
+        assertEquals("elapsed_ms", cells.get("'Setup'!F1"));
+        assertEquals("error", cells.get("'Setup'!G1"));
+        assertFalse(cells.containsKey("'Setup'!H1"));
+
+        assertTrue(cells.get("'Setup'!A2").startsWith("Success - "));
+        assertEquals("1500", cells.get("'Setup'!F2"));
+        assertEquals("42", cells.get("'Setup'!E2"));
+        assertEquals("", cells.get("'Setup'!G2"));
+
+        assertTrue(cells.get("'Setup'!A3").startsWith("Error       - "));
+        assertEquals("relation \"x\" does not exist Position: 15", cells.get("'Setup'!G3"));
+    }
+
+    @Test
+    public void testFailedFlushKeepsStatuses() {
+        RecordingWriter writer = new RecordingWriter();
+        StatusWriter statuses = new StatusWriter(writer, "setup-key", "Setup", 0);
+
+        writer.failing = true;
+        statuses.success(row(0), new Date(), 10, 1);
+        statuses.flushIfDue();
+        assertTrue(writer.batches.isEmpty());
+
+        writer.failing = false;
+        statuses.flush();
+        assertEquals(1, writer.batches.size());
+        assertTrue(writer.batches.get(0).containsKey("'Setup'!A2"));
+
+        statuses.flush();
+        assertEquals(1, writer.batches.size());
+    }
+
+    @Test
+    public void testDeferredRowsKeepReason() {
+        RecordingWriter writer = new RecordingWriter();
+        StatusWriter statuses = new StatusWriter(writer, "setup-key", "Setup", Long.MAX_VALUE);
+
+        statuses.deferred(row(3), new Date(), "run deadline reached");
+        statuses.flush();
+
+        Map<String, String> cells = writer.batches.get(0);
+        assertTrue(cells.get("'Setup'!A5").startsWith("Deferred - "));
+        assertEquals("", cells.get("'Setup'!F5"));
+        assertEquals("run deadline reached", cells.get("'Setup'!G5"));
+    }
+
+    @Test
+    public void testHeaderReadFailureKeepsStatuses() {
+        RecordingWriter writer = new RecordingWriter();
+        StatusWriter statuses = new StatusWriter(writer, "setup-key", "Setup", Long.MAX_VALUE);
+
+        writer.headerFailing = true;
+        statuses.success(row(0), new Date(), 10, 1);
+        statuses.flush();
+        assertTrue(writer.batches.isEmpty());
+
+        writer.headerFailing = false;
+        statuses.flush();
+        assertEquals(1, writer.batches.size());
+        assertEquals("elapsed_ms", writer.batches.get(0).get("'Setup'!F1"));
+        assertEquals("10", writer.batches.get(0).get("'Setup'!F2"));
+    }
+
+    @Test
+    public void testHeadersAreWrittenOnce() {
+        RecordingWriter writer = new RecordingWriter();
+        StatusWriter statuses = new StatusWriter(writer, "setup-key", "Setup", Long.MAX_VALUE);
+
+        statuses.success(row(0), new Date(), 10, 1);
+        statuses.flush();
+        statuses.success(row(1), new Date(), 20, 2);
+        statuses.flush();
+
+        assertEquals(2, writer.batches.size());
+        assertFalse(writer.batches.get(1).containsKey("'Setup'!F1"));
+        assertEquals("20", writer.batches.get(1).get("'Setup'!F3"));
+        assertEquals(1, writer.headerReads);
+    }
+
+    private SetupRow row(int index) {
+        Map<String, String> values = new HashMap<>();
+        values.put("query", "select 1");
+        return new SetupRow(index, values);
+    }
+}
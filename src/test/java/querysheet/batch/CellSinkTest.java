@@ -0,0 +1,56 @@
+package querysheet.batch;
+
+import org.junit.Test;
+import querysheet.mock.MockResultSet;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class CellSinkTest {
+
+    public class PeopleResultSet extends MockResultSet {
+        public PeopleResultSet() {
+            addRow("Person, 1", 21, 1.5);
+            addRow("Person \"2\"", 22, null);
+        }
+
+        private void addRow(String name, int age, Double hours) {
+            addRow();
+            addString("name", name);
+            addInt("age", age);
+            addDouble("hours", hours);
+        }
+    }
+
+    public class UpperCaseBatch extends TableToSpreadsheetBatch {
+        @Override
+        public String getValue(int row, int column) {
+            return super.getValue(row, column).toUpperCase();
+        }
+    }
+
+    @Test
+    public void testStreamTableAsCsv() {
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch();
+        batch.load(new PeopleResultSet());
+
+        StringWriter writer = new StringWriter();
+        batch.stream(new CsvCellSink(writer));
+
+        assertEquals("name,age,hours\r\n\"Person, 1\",21,\"1,5\"\r\n\"Person \"\"2\"\"\",22,null\r\n", writer.toString());
+        batch.close();
+    }
+
+    @Test
+    public void testStreamKeepsOverriddenGetValue() {
+        TableToSpreadsheetBatch batch = new UpperCaseBatch();
+        batch.load(new PeopleResultSet());
+
+        StringWriter writer = new StringWriter();
+        batch.stream(new CsvCellSink(writer));
+
+        assertEquals("NAME,AGE,HOURS\r\n\"PERSON, 1\",21,\"1,5\"\r\n\"PERSON \"\"2\"\"\",22,NULL\r\n", writer.toString());
+        batch.close();
+    }
+}
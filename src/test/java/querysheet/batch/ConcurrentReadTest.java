@@ -0,0 +1,80 @@
+package querysheet.batch;
+
+import org.junit.Test;
+import querysheet.mock.MockResultSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentReadTest {
+
+    private static final int ROWS = 5000;
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void testConcurrentReadsOfSpilledBatch() throws Exception {
+        final TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch(1000);
+        batch.load(resultSet());
+
+        final String[][] expected = batch.getRange(1, batch.rows());
+        assertEquals(ROWS + 1, expected.length);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final int seed = t;
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (int i = 0; i < 2000; i++) {
+                        int row = 1 + (int) ((i * 7919L + seed * 104729L) % batch.rows());
+
+                        if (!expected[row - 1][0].equals(batch.getValue(row, 1))) {
+                            return false;
+                        }
+                        if (!expected[row - 1][2].equals(batch.getRange(row, row)[0][2])) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+
+        executor.shutdown();
+        batch.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFrozenStoreRejectsRows() {
+        RowStore store = new RowStore(1000);
+        store.add(new Object[]{"a"});
+        store.freeze();
+
+        assertTrue(store.isFrozen());
+        store.add(new Object[]{"b"});
+    }
+
+    private MockResultSet resultSet() {
+        MockResultSet rs = new MockResultSet();
+        for (int i = 0; i < ROWS; i++) {
+            rs.addRow();
+            rs.addString("name", "name - " + i);
+            rs.addInt("id", i);
+            rs.addDouble("hours", i / 4.0);
+        }
+        return rs;
+    }
+}
@@ -0,0 +1,155 @@
+package querysheet.batch;
+
+import org.junit.Test;
+import querysheet.mock.MockResultSet;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class MemoryGovernorTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void testTryReserveWithinBudget() {
+        MemoryGovernor governor = new MemoryGovernor(2 * MB, 0);
+        MemoryReservation first = governor.open();
+        MemoryReservation second = governor.open();
+
+        assertTrue(first.tryReserve(MB));
+        assertTrue(second.tryReserve(MB / 2));
+        assertFalse(second.tryReserve(MB));
+        assertEquals(2 * MB, governor.reserved());
+
+        first.close();
+        assertEquals(MB, governor.reserved());
+        assertTrue(second.tryReserve(MB));
+
+        second.close();
+        assertEquals(0, governor.reserved());
+        assertEquals(2 * MB, governor.peak());
+    }
+
+    @Test
+    public void testSingleReservationMayExceedBudget() {
+        MemoryGovernor governor = new MemoryGovernor(MB, 0);
+        MemoryReservation reservation = governor.open();
+
+        assertTrue(reservation.tryReserve(MB));
+        assertTrue(reservation.tryReserve(3 * MB));
+        assertEquals(4 * MB, governor.reserved());
+
+        reservation.close();
+    }
+
+    @Test
+    public void testReserveWaitsForRelease() throws InterruptedException {
+        MemoryGovernor governor = new MemoryGovernor(MB, 5000);
+        final MemoryReservation first = governor.open();
+        MemoryReservation second = governor.open();
+
+        first.reserve(MB);
+
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                first.close();
+            }
+        };
+        releaser.start();
+
+        second.reserve(MB);
+        releaser.join();
+
+        assertEquals(MB, governor.reserved());
+        second.close();
+    }
+
+    @Test
+    public void testOldestHolderWaitsForRelease() throws InterruptedException {
+        MemoryGovernor governor = new MemoryGovernor(2 * MB, 5000);
+        MemoryReservation first = governor.open();
+        final MemoryReservation second = governor.open();
+
+        first.reserve(MB);
+        second.reserve(MB);
+
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                second.close();
+            }
+        };
+        releaser.start();
+
+        first.reserve(MB);
+        releaser.join();
+
+        assertEquals(2 * MB, governor.reserved());
+        first.close();
+    }
+
+    @Test
+    public void testNewerHolderFailsWhileOlderWaits() throws InterruptedException {
+        MemoryGovernor governor = new MemoryGovernor(3 * MB, 60000);
+        final MemoryReservation first = governor.open();
+        MemoryReservation second = governor.open();
+        MemoryReservation third = governor.open();
+
+        first.reserve(MB);
+        second.reserve(MB);
+
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                first.reserve(2 * MB);
+            }
+        };
+        waiter.start();
+        Thread.sleep(200);
+
+        long start = System.currentTimeMillis();
+        try {
+            second.reserve(2 * MB);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+        assertFalse(third.tryReserve(MB / 2));
+
+        second.close();
+        waiter.join(5000);
+
+        assertFalse(waiter.isAlive());
+        assertEquals(3 * MB, governor.reserved());
+        assertEquals(3 * MB, first.bytes());
+        first.close();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testReserveTimesOut() {
+        MemoryGovernor governor = new MemoryGovernor(MB, 10);
+        governor.open().reserve(MB);
+        governor.open().reserve(MB);
+    }
+
+    @Test
+    public void testEstimateRowBytes() throws SQLException {
+        MockResultSet rs = new MockResultSet();
+        rs.addRow();
+        rs.addInt("id", 1);
+        rs.addString("name", "joao");
+        rs.addDouble("hours", 1.0);
+
+        assertEquals(16 + 3 * 4 + 16 + (40 + 2 * 64) + 24, MemoryGovernor.estimateRowBytes(rs.getMetaData()));
+    }
+}
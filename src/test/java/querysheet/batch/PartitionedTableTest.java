@@ -0,0 +1,59 @@
+package querysheet.batch;
+
+import org.junit.Test;
+import querysheet.mock.MockResultSet;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PartitionedTableTest {
+
+    public class CustomerResultSet extends MockResultSet {
+        public CustomerResultSet() {
+            addRow("Ninjas", "key-ninjas", "joao", 10);
+            addRow("Acme", "key-acme", "pedro", 20);
+            addRow("Ninjas", "key-ninjas", "zeh", 30);
+        }
+
+        private void addRow(String customer, String spreadsheet, String person, int hours) {
+            addRow();
+            addString("customer", customer);
+            addString("spreadsheet", spreadsheet);
+            addString("person", person);
+            addInt("hours", hours);
+        }
+    }
+
+    @Test
+    public void testRoutesRowsByPartition() {
+        PartitionedTable table = new PartitionedTable(TableToSpreadsheetBatch.class, "customer", null);
+        table.load(new CustomerResultSet());
+
+        assertEquals("[Acme, Ninjas]", new ArrayList<>(table.partitions()).toString());
+
+        TableToSpreadsheetBatch ninjas = table.getBatch("Ninjas");
+        assertEquals(3, ninjas.rows());
+        assertEquals(4, ninjas.cols());
+        assertEquals("person", ninjas.getValue(1, 3));
+        assertEquals("joao", ninjas.getValue(2, 3));
+        assertEquals("30", ninjas.getValue(3, 4));
+
+        assertEquals(2, table.getBatch("Acme").rows());
+        assertNull(table.getSpreadsheet("Acme"));
+
+        table.close();
+    }
+
+    @Test
+    public void testPartitionSpreadsheets() {
+        PartitionedTable table = new PartitionedTable(TableToSpreadsheetBatch.class, "customer", "spreadsheet");
+        table.load(new CustomerResultSet());
+
+        assertEquals("key-acme", table.getSpreadsheet("Acme"));
+        assertEquals("key-ninjas", table.getSpreadsheet("Ninjas"));
+
+        table.close();
+    }
+}
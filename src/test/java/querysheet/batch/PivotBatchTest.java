@@ -0,0 +1,75 @@
+package querysheet.batch;
+
+import org.junit.Test;
+import querysheet.mock.MockResultSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class PivotBatchTest {
+
+    public class HoursResultSet extends MockResultSet {
+        public HoursResultSet() {
+            addRow("joao", "Ninjas", 10.0);
+            addRow("pedro", "Acme", 4.5);
+            addRow("joao", "Acme", 8.0);
+            addRow("joao", "Ninjas", 2.0);
+            addRow("ana", "Beegos", null);
+            addRow("pedro", "Beegos", 1.0);
+        }
+
+        private void addRow(String person, String customer, Double hours) {
+            addRow();
+            addString("person", person);
+            addString("customer", customer);
+            addDouble("hours", hours);
+        }
+    }
+
+    @Test
+    public void testSortedHeaders() {
+        PivotBatch batch = new PivotBatch("person", "customer", "hours");
+        batch.load(new HoursResultSet());
+
+        assertEquals(4, batch.rows());
+        assertEquals(4, batch.cols());
+
+        assertBatchRow(batch, 1, "person", "Acme", "Beegos", "Ninjas");
+    }
+
+    @Test
+    public void testPivotSumsValues() {
+        PivotBatch batch = new PivotBatch("person", "customer", "hours");
+        batch.load(new HoursResultSet());
+
+        assertBatchRow(batch, 2, "ana", "", "", "");
+        assertBatchRow(batch, 3, "joao", "8", "", "12");
+        assertBatchRow(batch, 4, "pedro", "4,5", "1", "");
+    }
+
+    @Test
+    public void testManyColumnKeys() {
+        MockResultSet rs = new MockResultSet();
+        for (int i = 0; i < 40; i++) {
+            rs.addRow();
+            rs.addString("person", "p" + (i % 3));
+            rs.addString("week", String.format("w%02d", 39 - i));
+            rs.addDouble("hours", (double) i);
+        }
+
+        PivotBatch batch = new PivotBatch("person", "week", "hours");
+        batch.load(rs);
+
+        assertEquals(41, batch.cols());
+        assertEquals("w00", batch.getValue(1, 2));
+        assertEquals("w39", batch.getValue(1, 41));
+        assertEquals("39", batch.getValue(2, 2));
+        assertEquals("0", batch.getValue(2, 41));
+        assertEquals("", batch.getValue(3, 41));
+    }
+
+    private void assertBatchRow(PivotBatch batch, int row, String... columns) {
+        for (int i = 0; i < columns.length; i++) {
+            assertEquals(columns[i], batch.getValue(row, i + 1));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package querysheet.batch;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class RowStoreTest {
+
+    @Test
+    public void testKeepsRowsInMemoryWithinBudget() {
+        RowStore store = new RowStore(Long.MAX_VALUE);
+        store.add(row(1));
+        store.add(row(2));
+
+        assertFalse(store.isSpilling());
+        assertEquals(2, store.size());
+        assertEquals("name - 2", store.get(1)[0]);
+
+        store.close();
+    }
+
+    @Test
+    public void testSpillsAndReadsRandomRows() {
+        RowStore store = new RowStore(1000);
+
+        for (int i = 0; i < 5000; i++) {
+            store.add(row(i));
+        }
+
+        assertTrue(store.isSpilling());
+        assertEquals(5000, store.size());
+
+        for (int i : new int[]{4999, 0, 2500, 1, 1024, 4096, 3}) {
+            assertRow(i, store.get(i));
+        }
+
+        store.close();
+    }
+
+    @Test
+    public void testSpilledValuesKeepNumericTypes() {
+        RowStore store = new RowStore(0);
+        for (int i = 0; i < 2000; i++) {
+            store.add(new Object[]{null, 42, 1.5d, new BigDecimal("10.25"), "text", Boolean.TRUE});
+        }
+
+        Object[] row = store.get(0);
+        assertNull(row[0]);
+        assertEquals(42L, row[1]);
+        assertEquals(1.5d, row[2]);
+        assertEquals(new BigDecimal("10.25"), row[3]);
+        assertEquals("text", row[4]);
+        assertEquals("true", row[5]);
+
+        store.close();
+    }
+
+    private Object[] row(int i) {
+        return new Object[]{"name - " + i, i, i / 2.0, i % 7 == 0 ? null : new BigDecimal(i + ".01")};
+    }
+
+    private void assertRow(int i, Object[] row) {
+        assertEquals("name - " + i, row[0]);
+        assertEquals(((Number) row[1]).intValue(), i);
+        assertEquals(i / 2.0, ((Number) row[2]).doubleValue(), 0);
+        assertEquals(i % 7 == 0 ? null : new BigDecimal(i + ".01"), row[3]);
+    }
+}
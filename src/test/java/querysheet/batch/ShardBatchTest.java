@@ -0,0 +1,24 @@
+package querysheet.batch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShardBatchTest {
+
+    private StringTableBatch table() {
+        return new StringTableBatch(new String[][]{{"id", "name"}, {"1", "joao"}, {"2", "pedro"}, {"3", "zeh"}});
+    }
+
+    @Test
+    public void testShardRepeatsHeader() {
+        ShardBatch shard = new ShardBatch(table(), 3, 2);
+
+        assertEquals(3, shard.rows());
+        assertEquals(2, shard.cols());
+        assertEquals("id", shard.getValue(1, 1));
+        assertEquals("2", shard.getValue(2, 1));
+        assertEquals("zeh", shard.getValue(3, 2));
+        assertEquals(4, shard.getLastRow());
+    }
+}
@@ -0,0 +1,141 @@
+package querysheet.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+	public class FakeConnection implements InvocationHandler {
+
+		private boolean closed = false;
+
+		private String failState;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().equals("close")) {
+				closed = true;
+			} else if (method.getName().equals("isClosed")) {
+				return closed;
+			} else if (method.getName().equals("prepareStatement")) {
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+						new InvocationHandler() {
+							@Override
+							public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+								if (method.getName().equals("execute") && failState != null) {
+									throw new SQLException("failed", failState);
+								}
+								return defaultValue(method);
+							}
+						});
+			}
+			return defaultValue(method);
+		}
+
+		private Object defaultValue(Method method) {
+			return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+		}
+	}
+
+	public class FakePool extends ConnectionPool {
+
+		private List<FakeConnection> connections = new ArrayList<>();
+
+		public FakePool(int size) {
+			super("fake", null, null, size, null);
+		}
+
+		@Override
+		protected DatabaseAPI connect() {
+			FakeConnection connection = new FakeConnection();
+			connections.add(connection);
+
+			DatabaseAPI db = new DatabaseAPI((Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[]{Connection.class}, connection));
+			db.setPool(this);
+			return db;
+		}
+	}
+
+	@Test
+	public void testReleasedConnectionIsReused() {
+		FakePool pool = new FakePool(1);
+
+		DatabaseAPI db = pool.acquire();
+		db.exec("select 1");
+		db.release();
+
+		assertSame(db, pool.acquire());
+		assertEquals(1, pool.connections.size());
+	}
+
+	@Test
+	public void testQueryErrorKeepsConnection() {
+		FakePool pool = new FakePool(1);
+
+		DatabaseAPI db = pool.acquire();
+		pool.connections.get(0).failState = "42P01";
+		try {
+			db.exec("select * from missing");
+			fail();
+		} catch (RuntimeException ignored) {
+		}
+		db.release();
+
+		assertSame(db, pool.acquire());
+	}
+
+	@Test
+	public void testBrokenConnectionIsDiscarded() {
+		FakePool pool = new FakePool(1);
+
+		DatabaseAPI db = pool.acquire();
+		pool.connections.get(0).failState = "08006";
+		try {
+			db.exec("select 1");
+			fail();
+		} catch (RuntimeException ignored) {
+		}
+		db.release();
+
+		assertTrue(pool.connections.get(0).closed);
+		assertNotSame(db, pool.acquire());
+		assertEquals(1, pool.inUse());
+	}
+
+	@Test
+	public void testCloseClosesLeasedConnections() {
+		FakePool pool = new FakePool(2);
+
+		DatabaseAPI leased = pool.acquire();
+		pool.acquire().release();
+		pool.close();
+
+		assertTrue(pool.connections.get(0).closed);
+		assertTrue(pool.connections.get(1).closed);
+
+		leased.release();
+		assertEquals(0, pool.inUse());
+
+		try {
+			pool.acquire();
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("connection pool is closed: fake", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package querysheet.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DataSourceTest {
+
+	public class CountingPool extends ConnectionPool {
+
+		public CountingPool(String url, int size) {
+			super(url, null, null, size, null);
+		}
+
+		@Override
+		protected DatabaseAPI connect() {
+			return null;
+		}
+	}
+
+	@Test
+	public void testWritesGoToPrimary() {
+		ConnectionPool primary = new CountingPool("primary", 2);
+		DataSource source = new DataSource("reports", primary, replicas("r1", "r2"), DataSource.Routing.ROUND_ROBIN);
+
+		assertSame(primary, source.pool(false));
+	}
+
+	@Test
+	public void testReadsWithoutReplicasGoToPrimary() {
+		ConnectionPool primary = new CountingPool("primary", 2);
+		DataSource source = new DataSource("reports", primary, new ArrayList<ConnectionPool>(),
+				DataSource.Routing.LEAST_LOADED);
+
+		assertSame(primary, source.pool(true));
+	}
+
+	@Test
+	public void testRoundRobinReads() {
+		List<ConnectionPool> replicas = replicas("r1", "r2", "r3");
+		DataSource source = new DataSource("reports", new CountingPool("primary", 2), replicas,
+				DataSource.Routing.ROUND_ROBIN);
+
+		List<String> urls = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			urls.add(source.pool(true).getUrl());
+		}
+
+		assertEquals(Arrays.asList("r1", "r2", "r3", "r1"), urls);
+	}
+
+	@Test
+	public void testLeastLoadedReads() {
+		List<ConnectionPool> replicas = replicas("r1", "r2", "r3");
+		DataSource source = new DataSource("reports", new CountingPool("primary", 2), replicas,
+				DataSource.Routing.LEAST_LOADED);
+
+		replicas.get(0).acquire();
+		replicas.get(1).acquire();
+		replicas.get(1).acquire();
+
+		assertEquals("r3", source.pool(true).getUrl());
+
+		source.acquire(true);
+		source.acquire(true);
+		assertEquals(Arrays.asList(2, 2, 1), Arrays.asList(replicas.get(0).inUse(), replicas.get(1).inUse(),
+				replicas.get(2).inUse()));
+	}
+
+	private List<ConnectionPool> replicas(String... urls) {
+		List<ConnectionPool> replicas = new ArrayList<>();
+		for (String url : urls) {
+			replicas.add(new CountingPool(url, 4));
+		}
+		return replicas;
+	}
+}
@@ -0,0 +1,128 @@
+package querysheet.google;
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class GoogleClientsTest {
+
+    private HttpServer server;
+
+    private GenericUrl url;
+
+    private Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    private String lastBody;
+
+    private int dropRequest = -1;
+
+    private int requests = 0;
+
+    public class EchoHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            if (requests++ == dropRequest) {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                exchange.close();
+                return;
+            }
+
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                lastBody = IOUtils.toString(new GZIPInputStream(exchange.getRequestBody()), "UTF-8");
+            } else {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                lastBody = null;
+            }
+
+            byte[] bytes = "{}".getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new EchoHandler());
+        server.start();
+        url = new GenericUrl("http://localhost:" + server.getAddress().getPort() + "/echo");
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testRequestsReuseConnectionsAndGzipContent() throws IOException {
+        HttpRequestFactory factory = GoogleClients.requestFactory(new HttpRequestInitializer() {
+            @Override
+            public void initialize(HttpRequest request) {
+            }
+        });
+
+        for (int i = 0; i < 5; i++) {
+            JsonHttpContent content = new JsonHttpContent(GoogleClients.jsonFactory(), Collections.singletonMap("row", i));
+            factory.buildPostRequest(url, content).execute().disconnect();
+            assertEquals("{\"row\":" + i + "}", lastBody);
+        }
+
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void testRetriesReadWhenPooledConnectionIsDropped() throws IOException {
+        HttpRequestFactory factory = GoogleClients.requestFactory(new HttpRequestInitializer() {
+            @Override
+            public void initialize(HttpRequest request) {
+            }
+        });
+        dropRequest = 1;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("{}", factory.buildGetRequest(url).execute().parseAsString());
+        }
+
+        assertEquals(4, requests);
+    }
+
+    @Test
+    public void testRefreshDelayKeepsAheadOfExpiry() {
+        Credential credential = new Credential(BearerToken.authorizationHeaderAccessMethod());
+        assertEquals(60000, GoogleClients.refreshDelay(credential, 60000));
+
+        credential.setExpirationTimeMilliseconds(System.currentTimeMillis() + 3600 * 1000);
+        long delay = GoogleClients.refreshDelay(credential, 5 * 60 * 1000);
+        assertTrue(delay > 54 * 60 * 1000 && delay <= 55 * 60 * 1000);
+
+        credential.setExpirationTimeMilliseconds(System.currentTimeMillis() + 60 * 1000);
+        assertEquals(0, GoogleClients.refreshDelay(credential, 5 * 60 * 1000));
+    }
+}
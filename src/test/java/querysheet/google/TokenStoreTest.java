@@ -0,0 +1,69 @@
+package querysheet.google;
+
+import com.google.api.client.auth.oauth2.StoredCredential;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class TokenStoreTest {
+
+    private File file;
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("querysheet-tokens", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    @Test
+    public void testSavesAndLoadsTokens() {
+        TokenStore store = new TokenStore(file, "secret");
+        assertNull(store.load());
+
+        store.save(credential());
+
+        StoredCredential loaded = new TokenStore(file, "secret").load();
+        assertEquals("access-token", loaded.getAccessToken());
+        assertEquals("refresh-token", loaded.getRefreshToken());
+        assertEquals(Long.valueOf(1234567890L), loaded.getExpirationTimeMilliseconds());
+    }
+
+    @Test
+    public void testTokensAreEncrypted() throws IOException {
+        new TokenStore(file, "secret").save(credential());
+
+        String contents = new String(Files.readAllBytes(file.toPath()), "ISO-8859-1");
+        assertFalse(contents.contains("access-token"));
+        assertFalse(contents.contains("refresh-token"));
+    }
+
+    @Test
+    public void testWrongKeyOrTamperingIsIgnored() throws IOException {
+        new TokenStore(file, "secret").save(credential());
+        assertNull(new TokenStore(file, "other").load());
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file.toPath(), bytes);
+        assertNull(new TokenStore(file, "secret").load());
+    }
+
+    private StoredCredential credential() {
+        StoredCredential credential = new StoredCredential();
+        credential.setAccessToken("access-token");
+        credential.setRefreshToken("refresh-token");
+        credential.setExpirationTimeMilliseconds(1234567890L);
+        return credential;
+    }
+}
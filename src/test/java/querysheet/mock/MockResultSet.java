@@ -40,20 +40,42 @@ public class MockResultSet implements ResultSet {
 		
 		private List<Integer> intsList = new ArrayList<Integer>();
 
+		private Map<String, Double> doublesMap = new HashMap<String, Double>();
+
+		private List<Double> doublesList = new ArrayList<Double>();
+
+		private List<String> columns = new ArrayList<String>();
+
+		private List<Object> objectsList = new ArrayList<Object>();
+
+		private void addObject(String column, Object value) {
+			columns.add(column);
+			objectsList.add(value);
+		}
+
 		public void addString(String column, String value) {
 			stringsMap.put(column, value);
 			stringsList.add(value);
+			addObject(column, value);
 		}
 
 		public void addDate(String column, java.util.Date value) {
 			Date valueRightDateType = new Date(value.getTime());
 			datesMap.put(column, valueRightDateType);
 			datesList.add(valueRightDateType);
+			addObject(column, valueRightDateType);
 		}
 
 		public void addInt(String column, Integer value) {
 			intsMap.put(column, value);
 			intsList.add(value);
+			addObject(column, value);
+		}
+
+		public void addDouble(String column, Double value) {
+			doublesMap.put(column, value);
+			doublesList.add(value);
+			addObject(column, value);
 		}
 
 		public String getString(String column) {
@@ -68,6 +90,10 @@ public class MockResultSet implements ResultSet {
 			return intsMap.get(column);
 		}
 
+		public Double getDouble(String column) {
+			return doublesMap.get(column);
+		}
+
 		public String getString(int columnIndex) {
 			return stringsList.get(columnIndex-1);
 		}
@@ -79,10 +105,32 @@ public class MockResultSet implements ResultSet {
 		public Date getDate(int columnIndex) {
 			return datesList.get(columnIndex-1);			
 		}
+
+		public Double getDouble(int columnIndex) {
+			return doublesList.get(columnIndex-1);
+		}
+
+		public Object getObject(int columnIndex) {
+			return objectsList.get(columnIndex-1);
+		}
+
+		public Object getObject(String column) {
+			return objectsList.get(columns.indexOf(column));
+		}
+
+		public List<String> getColumns() {
+			return columns;
+		}
+
+		public List<Object> getObjects() {
+			return objectsList;
+		}
 	}
 
 	private int currentGetRowIndex = -1;
 
+	private boolean wasNull;
+
 	private Row currentAddedRow;
 
 	List<Row> rows = new ArrayList<Row>();
@@ -104,6 +152,10 @@ public class MockResultSet implements ResultSet {
 		currentAddedRow.addInt(column, value);
 	}
 
+	public void addDouble(String column, Double value) {
+		currentAddedRow.addDouble(column, value);
+	}
+
 	private Row getCurrentGetRow() {
 		return rows.get(currentGetRowIndex);
 	}
@@ -133,7 +185,7 @@ public class MockResultSet implements ResultSet {
 
 	@Override
 	public boolean wasNull() throws SQLException {
-		return false;
+		return wasNull;
 	}
 
 	@Override
@@ -173,7 +225,7 @@ public class MockResultSet implements ResultSet {
 
 	@Override
 	public double getDouble(int columnIndex) throws SQLException {
-		return 0;
+		return doubleOrZero(getCurrentGetRow().getDouble(columnIndex));
 	}
 
 	@Override
@@ -264,8 +316,12 @@ public class MockResultSet implements ResultSet {
 
 	@Override
 	public double getDouble(String columnLabel) throws SQLException {
+		return doubleOrZero(getCurrentGetRow().getDouble(columnLabel));
+	}
 
-		return 0;
+	private double doubleOrZero(Double value) {
+		wasNull = value == null;
+		return wasNull ? 0 : value;
 	}
 
 	@Override
@@ -334,20 +390,21 @@ public class MockResultSet implements ResultSet {
 
 	@Override
 	public ResultSetMetaData getMetaData() throws SQLException {
-
-		return null;
+		return rows.isEmpty() ? new MockResultSetMetaData(new Row()) : new MockResultSetMetaData(rows.get(0));
 	}
 
 	@Override
 	public Object getObject(int columnIndex) throws SQLException {
-
-		return null;
+		Object value = getCurrentGetRow().getObject(columnIndex);
+		wasNull = value == null;
+		return value;
 	}
 
 	@Override
 	public Object getObject(String columnLabel) throws SQLException {
-
-		return null;
+		Object value = getCurrentGetRow().getObject(columnLabel);
+		wasNull = value == null;
+		return value;
 	}
 
 	@Override
@@ -0,0 +1,140 @@
+package querysheet.mock;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+public class MockResultSetMetaData implements ResultSetMetaData {
+
+	private MockResultSet.Row row;
+
+	public MockResultSetMetaData(MockResultSet.Row row) {
+		this.row = row;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return null;
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public int getColumnCount() throws SQLException {
+		return row.getColumns().size();
+	}
+
+	@Override
+	public boolean isAutoIncrement(int column) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public boolean isCaseSensitive(int column) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public boolean isSearchable(int column) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public boolean isCurrency(int column) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public int isNullable(int column) throws SQLException {
+		return columnNullable;
+	}
+
+	@Override
+	public boolean isSigned(int column) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public int getColumnDisplaySize(int column) throws SQLException {
+		return 0;
+	}
+
+	@Override
+	public String getColumnLabel(int column) throws SQLException {
+		return row.getColumns().get(column-1);
+	}
+
+	@Override
+	public String getColumnName(int column) throws SQLException {
+		return getColumnLabel(column);
+	}
+
+	@Override
+	public String getSchemaName(int column) throws SQLException {
+		return null;
+	}
+
+	@Override
+	public int getPrecision(int column) throws SQLException {
+		return 0;
+	}
+
+	@Override
+	public int getScale(int column) throws SQLException {
+		return 0;
+	}
+
+	@Override
+	public String getTableName(int column) throws SQLException {
+		return null;
+	}
+
+	@Override
+	public String getCatalogName(int column) throws SQLException {
+		return null;
+	}
+
+	@Override
+	public int getColumnType(int column) throws SQLException {
+		Object value = row.getObjects().get(column-1);
+
+		if (value instanceof Integer) {
+			return Types.INTEGER;
+		}
+		if (value instanceof Double) {
+			return Types.DOUBLE;
+		}
+		if (value instanceof java.util.Date) {
+			return Types.DATE;
+		}
+		return Types.VARCHAR;
+	}
+
+	@Override
+	public String getColumnTypeName(int column) throws SQLException {
+		return null;
+	}
+
+	@Override
+	public boolean isReadOnly(int column) throws SQLException {
+		return true;
+	}
+
+	@Override
+	public boolean isWritable(int column) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public boolean isDefinitelyWritable(int column) throws SQLException {
+		return false;
+	}
+
+	@Override
+	public String getColumnClassName(int column) throws SQLException {
+		return null;
+	}
+}
@@ -0,0 +1,157 @@
+package querysheet.outbox;
+
+import com.github.feroult.gapi.BatchOptions;
+import com.github.feroult.gapi.spreadsheet.SpreadsheetBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import querysheet.batch.TableToSpreadsheetBatch;
+import querysheet.mock.MockResultSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OutboxTest {
+
+    private File dir;
+
+    public class RecordingUploader extends OutboxUploader {
+
+        private List<String> uploads = Collections.synchronizedList(new ArrayList<String>());
+
+        private int failures;
+
+        public RecordingUploader(Outbox outbox, int failures) {
+            super(outbox, null, 2, 1);
+            this.failures = failures;
+        }
+
+        @Override
+        protected void upload(OutboxEntry entry, SpreadsheetBatch batch) {
+            if (failures-- > 0) {
+                throw new RuntimeException("quota");
+            }
+            uploads.add(entry.getWorksheet() + ":" + batch.rows() + ":" + batch.getValue(2, 1));
+        }
+    }
+
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("querysheet-outbox").toFile();
+    }
+
+    @After
+    public void after() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testEntriesRoundTrip() {
+        Outbox outbox = new Outbox(dir);
+        TableToSpreadsheetBatch batch = batch(3);
+
+        OutboxEntry entry = outbox.append("key", "people", batch, new BatchOptions[]{BatchOptions.SHRINK});
+
+        assertEquals("key", entry.getKey());
+        assertEquals("people", entry.getWorksheet());
+        assertArrayEquals(new BatchOptions[]{BatchOptions.SHRINK}, entry.getOptions());
+
+        TableToSpreadsheetBatch loaded = entry.batch();
+        assertEquals(batch.rows(), loaded.rows());
+        assertEquals(batch.cols(), loaded.cols());
+        for (int row = 1; row <= batch.rows(); row++) {
+            for (int column = 1; column <= batch.cols(); column++) {
+                assertEquals(batch.getValue(row, column), loaded.getValue(row, column));
+            }
+        }
+
+        loaded.close();
+        batch.close();
+    }
+
+    @Test
+    public void testUploaderDrainsPendingEntriesInOrder() {
+        Outbox previousRun = new Outbox(dir);
+        previousRun.append("key", "first", batch(1), new BatchOptions[]{});
+        previousRun.append("key", "second", batch(2), new BatchOptions[]{});
+
+        Outbox outbox = new Outbox(dir);
+        assertEquals(2, outbox.pending().size());
+
+        RecordingUploader uploader = new RecordingUploader(outbox, 1);
+        uploader.start();
+        uploader.submit(outbox.append("key", "third", batch(3), new BatchOptions[]{}));
+
+        assertTrue(uploader.await(5000));
+        assertEquals(3, uploader.uploads.size());
+        assertEquals("first:2:name 0", uploader.uploads.get(0));
+        assertEquals("second:3:name 0", uploader.uploads.get(1));
+        assertEquals("third:4:name 0", uploader.uploads.get(2));
+        assertTrue(outbox.pending().isEmpty());
+    }
+
+    @Test
+    public void testFailedEntriesStayForNextRun() {
+        Outbox outbox = new Outbox(dir);
+        RecordingUploader uploader = new RecordingUploader(outbox, 10);
+        uploader.submit(outbox.append("key", "people", batch(1), new BatchOptions[]{}));
+
+        assertTrue(uploader.await(5000));
+        assertTrue(uploader.uploads.isEmpty());
+        assertEquals(1, outbox.pending().size());
+    }
+
+    @Test
+    public void testNewerEntrySupersedesOlderForSameWorksheet() {
+        Outbox outbox = new Outbox(dir);
+        RecordingUploader uploader = new RecordingUploader(outbox, 0);
+
+        OutboxEntry older = outbox.append("key", "people", batch(1), new BatchOptions[]{});
+        outbox.append("key", "hours", batch(2), new BatchOptions[]{});
+        OutboxEntry newer = outbox.append("key", "people", batch(3), new BatchOptions[]{});
+
+        assertFalse(older.getFile().exists());
+        assertEquals(2, outbox.pending().size());
+
+        uploader.submit(older);
+        uploader.submit(newer);
+        assertTrue(uploader.await(5000));
+        assertEquals(Collections.singletonList("people:4:name 0"), uploader.uploads);
+    }
+
+    @Test
+    public void testPendingKeepsLatestEntryPerWorksheet() throws IOException {
+        Outbox outbox = new Outbox(dir);
+        File first = outbox.append("key", "people", batch(1), new BatchOptions[]{}).getFile();
+        File copy = new File(dir, "0000000000000-000000.qsb");
+        Files.copy(first.toPath(), copy.toPath());
+
+        List<OutboxEntry> pending = outbox.pending();
+
+        assertEquals(1, pending.size());
+        assertEquals(first, pending.get(0).getFile());
+        assertFalse(copy.exists());
+    }
+
+    private TableToSpreadsheetBatch batch(int rows) {
+        MockResultSet rs = new MockResultSet();
+        for (int i = 0; i < rows; i++) {
+            rs.addRow();
+            rs.addString("name", "name " + i);
+            rs.addDouble("hours", i * 1.5);
+        }
+
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch();
+        batch.load(rs);
+        return batch;
+    }
+}
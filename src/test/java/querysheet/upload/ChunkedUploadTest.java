@@ -0,0 +1,151 @@
+package querysheet.upload;
+
+import com.github.feroult.gapi.BatchOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import querysheet.batch.TableToSpreadsheetBatch;
+import querysheet.mock.MockResultSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ChunkedUploadTest {
+
+    private ExecutorService executor;
+
+    private TableToSpreadsheetBatch batch;
+
+    public class RecordingWriter implements RangeWriter {
+
+        private Map<Integer, String[][]> chunks = new ConcurrentHashMap<>();
+
+        private List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+        private AtomicInteger inFlight = new AtomicInteger();
+
+        private int maxInFlight = 0;
+
+        private AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void prepare(String key, String worksheet, int rows, int cols) {
+            calls.add(String.format("prepare %d x %d", rows, cols));
+        }
+
+        @Override
+        public void write(String key, String worksheet, int firstRow, String[][] values) {
+            int current = inFlight.incrementAndGet();
+            try {
+                synchronized (this) {
+                    maxInFlight = Math.max(maxInFlight, current);
+                }
+                if (firstRow == 11 && failures.getAndIncrement() == 0) {
+                    throw new RuntimeException("quota");
+                }
+                Thread.sleep(10);
+                chunks.put(firstRow, values);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void resize(String key, String worksheet, int rows, int cols) {
+            calls.add(String.format("resize %d x %d", rows, cols));
+        }
+    }
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(8);
+
+        MockResultSet rs = new MockResultSet();
+        for (int i = 1; i <= 24; i++) {
+            rs.addRow();
+            rs.addInt("id", i);
+            rs.addString("name", "Person - " + i);
+        }
+
+        batch = new TableToSpreadsheetBatch();
+        batch.load(rs);
+    }
+
+    @After
+    public void after() {
+        batch.close();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testUploadsChunksConcurrentlyWithRetry() {
+        RecordingWriter writer = new RecordingWriter();
+        ChunkedUpload upload = new ChunkedUpload(writer, executor, 2, 1);
+        upload.setRetryWait(1);
+
+        upload.upload("key", "people", batch, 10, new BatchOptions[]{BatchOptions.SHRINK});
+
+        assertEquals(3, writer.chunks.size());
+        assertEquals("id", writer.chunks.get(1)[0][0]);
+        assertEquals("Person - 10", writer.chunks.get(11)[0][1]);
+        assertEquals(5, writer.chunks.get(21).length);
+        assertEquals("24", writer.chunks.get(21)[4][0]);
+
+        assertTrue(writer.maxInFlight <= 2);
+        assertEquals(2, writer.failures.get());
+        assertEquals("[prepare 25 x 2, resize 25 x 2]", writer.calls.toString());
+    }
+
+    @Test
+    public void testFailsAfterRetries() {
+        RecordingWriter writer = new RecordingWriter() {
+            @Override
+            public void write(String key, String worksheet, int firstRow, String[][] values) {
+                throw new RuntimeException("down");
+            }
+        };
+        ChunkedUpload upload = new ChunkedUpload(writer, executor, 2, 2);
+        upload.setRetryWait(1);
+
+        try {
+            upload.upload("key", "people", batch, 10, new BatchOptions[]{BatchOptions.SHRINK});
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("down", e.getMessage());
+        }
+
+        assertEquals("[prepare 25 x 2]", writer.calls.toString());
+    }
+
+    @Test
+    public void testReleasesPermitWhileBackingOff() {
+        final List<Integer> written = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger failures = new AtomicInteger();
+        RecordingWriter writer = new RecordingWriter() {
+            @Override
+            public void write(String key, String worksheet, int firstRow, String[][] values) {
+                if (firstRow == 1 && failures.getAndIncrement() == 0) {
+                    throw new RuntimeException("quota");
+                }
+                written.add(firstRow);
+            }
+        };
+        ChunkedUpload upload = new ChunkedUpload(writer, executor, 1, 1);
+        upload.setRetryWait(300);
+
+        upload.upload("key", "people", batch, 10, new BatchOptions[]{});
+
+        assertEquals(3, written.size());
+        assertEquals(Integer.valueOf(1), written.get(2));
+    }
+}
@@ -0,0 +1,165 @@
+package querysheet.upload;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.drive.Drive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import querysheet.batch.CellSink;
+import querysheet.batch.TableToSpreadsheetBatch;
+import querysheet.mock.MockResultSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CsvUploadTest {
+
+    private HttpServer server;
+
+    private String rootUrl;
+
+    private ByteArrayOutputStream csv = new ByteArrayOutputStream();
+
+    private List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    private String targetUpdate;
+
+    public class DriveStandIn implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+            requests.add(method + " " + path);
+
+            if (method.equals("POST") && path.equals("/upload/drive/v2/files")) {
+                assertTrue(exchange.getRequestURI().getQuery().contains("convert=true"));
+                assertTrue(exchange.getRequestURI().getQuery().contains("uploadType=resumable"));
+                exchange.getResponseHeaders().add("Location", rootUrl + "upload/session");
+                respond(exchange, 200, null);
+            } else if (method.equals("PUT") && path.equals("/upload/session")) {
+                csv.write(body);
+                respond(exchange, 200, "{\"id\": \"imported\"}");
+            } else if (method.equals("GET") && path.equals("/v4/spreadsheets/imported")) {
+                respond(exchange, 200, "{\"sheets\": [{\"properties\": {\"sheetId\": 0, \"title\": \"Sheet1\", \"index\": 0}}]}");
+            } else if (method.equals("POST") && path.equals("/v4/spreadsheets/imported/sheets/0:copyTo")) {
+                assertTrue(new String(body, "UTF-8").contains("\"destinationSpreadsheetId\":\"target\""));
+                respond(exchange, 200, "{\"sheetId\": 99, \"title\": \"Copy of Sheet1\","
+                        + " \"gridProperties\": {\"rowCount\": 4, \"columnCount\": 2}}");
+            } else if (method.equals("GET") && path.equals("/v4/spreadsheets/target")) {
+                respond(exchange, 200, "{\"sheets\": [{\"properties\": {\"sheetId\": 1, \"title\": \"Setup\", \"index\": 0}},"
+                        + " {\"properties\": {\"sheetId\": 5, \"title\": \"hours\", \"index\": 1}}]}");
+            } else if (method.equals("POST") && path.equals("/v4/spreadsheets/target:batchUpdate")) {
+                targetUpdate = new String(body, "UTF-8");
+                respond(exchange, 200, "{}");
+            } else if (method.equals("DELETE") && path.equals("/drive/v2/files/imported")) {
+                respond(exchange, 204, null);
+            } else {
+                respond(exchange, 404, "{}");
+            }
+        }
+
+        private void respond(HttpExchange exchange, int status, String body) throws IOException {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new DriveStandIn());
+        server.start();
+        rootUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testUploadReplacesWorksheet() throws IOException {
+        MockResultSet rs = new MockResultSet();
+        for (int i = 0; i < 3; i++) {
+            rs.addRow();
+            rs.addString("name", i == 1 ? "joao, \"jr\"" : "name " + i);
+            rs.addDouble("hours", i + 0.5);
+        }
+
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch();
+        batch.load(rs);
+
+        NetHttpTransport transport = new NetHttpTransport();
+        Drive drive = new Drive.Builder(transport, new JacksonFactory(), null).setRootUrl(rootUrl)
+                .setApplicationName("querysheet-test").build();
+        CsvUpload upload = new CsvUpload(drive, new SheetsRangeWriter(transport.createRequestFactory(), rootUrl));
+
+        upload.upload("target", "hours", batch);
+        batch.close();
+
+        assertEquals("name,hours\r\nname 0,\"0,5\"\r\n\"joao, \"\"jr\"\"\",\"1,5\"\r\nname 2,\"2,5\"\r\n", csv.toString("UTF-8"));
+        assertFalse(targetUpdate.contains("\"deleteSheet\":{\"sheetId\":5}"));
+        assertTrue(targetUpdate.contains("\"deleteSheet\":{\"sheetId\":99}"));
+        assertTrue(targetUpdate.contains("\"pasteType\":\"PASTE_VALUES\""));
+        assertTrue(targetUpdate.contains("\"destination\":{\"sheetId\":5}"));
+        assertTrue(targetUpdate.contains("\"rowCount\":4"));
+        assertEquals("DELETE /drive/v2/files/imported", requests.get(requests.size() - 1));
+    }
+
+    @Test
+    public void testFailedCsvWriterDeletesImportedFile() {
+        MockResultSet rs = new MockResultSet();
+        rs.addRow();
+        rs.addString("name", "name 0");
+
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch() {
+            @Override
+            public void stream(CellSink sink) {
+                super.stream(sink);
+                throw new RuntimeException("spill file lost");
+            }
+        };
+        batch.load(rs);
+
+        NetHttpTransport transport = new NetHttpTransport();
+        Drive drive = new Drive.Builder(transport, new JacksonFactory(), null).setRootUrl(rootUrl)
+                .setApplicationName("querysheet-test").build();
+        CsvUpload upload = new CsvUpload(drive, new SheetsRangeWriter(transport.createRequestFactory(), rootUrl));
+
+        try {
+            upload.upload("target", "hours", batch);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("spill file lost", e.getMessage());
+        } finally {
+            batch.close();
+        }
+
+        assertNull(targetUpdate);
+        assertEquals("DELETE /drive/v2/files/imported", requests.get(requests.size() - 1));
+    }
+}
@@ -0,0 +1,176 @@
+package querysheet.upload;
+
+import com.github.feroult.gapi.BatchOptions;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import querysheet.batch.TableToSpreadsheetBatch;
+import querysheet.mock.MockResultSet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class PackedUploadTest {
+
+    private static final long MAX_REQUEST_BYTES = 4096;
+
+    private HttpServer server;
+
+    private String rootUrl;
+
+    private List<JsonObject> payloads = Collections.synchronizedList(new ArrayList<JsonObject>());
+
+    private List<String> gridUpdates = Collections.synchronizedList(new ArrayList<String>());
+
+    public class SheetsStandIn implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                in = new GZIPInputStream(in);
+            }
+            byte[] body = IOUtils.toByteArray(in);
+
+            if (method.equals("GET") && path.equals("/v4/spreadsheets/target")) {
+                respond(exchange, "{\"sheets\": [{\"properties\": {\"sheetId\": 7, \"title\": \"people\","
+                        + " \"gridProperties\": {\"rowCount\": 1000, \"columnCount\": 26}}}]}");
+            } else if (method.equals("POST") && path.equals("/v4/spreadsheets/target/values:batchUpdate")) {
+                assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                assertTrue(body.length <= MAX_REQUEST_BYTES);
+                payloads.add(new JsonParser().parse(new String(body, "UTF-8")).getAsJsonObject());
+                respond(exchange, "{}");
+            } else if (method.equals("POST") && path.equals("/v4/spreadsheets/target:batchUpdate")) {
+                gridUpdates.add(new String(body, "UTF-8"));
+                respond(exchange, "{}");
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+            }
+        }
+
+        private void respond(HttpExchange exchange, String body) throws IOException {
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new SheetsStandIn());
+        server.start();
+        rootUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testPacksRowsIntoSizedPayloads() {
+        MockResultSet rs = new MockResultSet();
+        for (int i = 0; i < 500; i++) {
+            rs.addRow();
+            rs.addString("name", "name " + i);
+            rs.addInt("id", i);
+        }
+
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch();
+        batch.load(rs);
+
+        SheetsRangeWriter writer = new SheetsRangeWriter(new NetHttpTransport().createRequestFactory(), rootUrl);
+        new PackedUpload(writer, MAX_REQUEST_BYTES).upload("target", "people", batch, new BatchOptions[]{BatchOptions.SHRINK});
+
+        assertTrue(payloads.size() > 1);
+
+        int nextRow = 1;
+        for (JsonObject payload : payloads) {
+            assertEquals("USER_ENTERED", payload.get("valueInputOption").getAsString());
+
+            JsonObject data = payload.getAsJsonArray("data").get(0).getAsJsonObject();
+            JsonArray values = data.getAsJsonArray("values");
+            int lastRow = nextRow + values.size() - 1;
+            assertEquals(String.format("'people'!A%d:B%d", nextRow, lastRow), data.get("range").getAsString());
+
+            for (int i = 0; i < values.size(); i++) {
+                JsonArray row = values.get(i).getAsJsonArray();
+                assertEquals(batch.getValue(nextRow + i, 1), row.get(0).getAsString());
+                assertEquals(batch.getValue(nextRow + i, 2), row.get(1).getAsString());
+            }
+
+            nextRow = lastRow + 1;
+        }
+
+        assertEquals(502, nextRow);
+        assertEquals(1, gridUpdates.size());
+        assertTrue(gridUpdates.get(0).contains("\"rowCount\":501"));
+
+        batch.close();
+    }
+
+    @Test
+    public void testSizesNonAsciiPayloadsByEncodedBytes() {
+        StringBuilder wide = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            wide.append("\u20ac");
+        }
+
+        MockResultSet rs = new MockResultSet();
+        for (int i = 0; i < 100; i++) {
+            rs.addRow();
+            rs.addString("price", wide.toString());
+            rs.addString("note", "a \"quoted\" \u00e7\u00e3o");
+        }
+
+        TableToSpreadsheetBatch batch = new TableToSpreadsheetBatch();
+        batch.load(rs);
+
+        SheetsRangeWriter writer = new SheetsRangeWriter(new NetHttpTransport().createRequestFactory(), rootUrl);
+        new PackedUpload(writer, MAX_REQUEST_BYTES).upload("target", "people", batch, new BatchOptions[]{});
+
+        int rows = 0;
+        for (JsonObject payload : payloads) {
+            JsonArray values = payload.getAsJsonArray("data").get(0).getAsJsonObject().getAsJsonArray("values");
+            rows += values.size();
+        }
+
+        assertTrue(payloads.size() > 2);
+        assertEquals(101, rows);
+
+        batch.close();
+    }
+
+    @Test
+    public void testRowBytesCountsUtf8AndEscapes() {
+        assertEquals(3 + 3 + 3, PackedUpload.rowBytes(new String[]{"abc"}));
+        assertEquals(3 + 3 + 6, PackedUpload.rowBytes(new String[]{"\u00e7\u20aca"}));
+        assertEquals(3 + 3 + 4, PackedUpload.rowBytes(new String[]{"\"\n"}));
+        assertEquals(3 + 3 + 4, PackedUpload.rowBytes(new String[]{"\ud83d\ude00"}));
+        assertEquals(3 + 3 + 6 + 3, PackedUpload.rowBytes(new String[]{"\u0001", null}));
+    }
+}
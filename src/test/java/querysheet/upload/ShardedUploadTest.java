@@ -0,0 +1,39 @@
+package querysheet.upload;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShardedUploadTest {
+
+    @Test
+    public void testShardsAboveCurrentCountAreStale() {
+        List<Map<String, String>> index = index("people_1", "people_2", "people_3", "people_4");
+
+        assertEquals(Arrays.asList("people_3", "people_4"), ShardedUpload.staleShards(index, "people", 2));
+        assertEquals(new ArrayList<String>(), ShardedUpload.staleShards(index, "people", 4));
+    }
+
+    @Test
+    public void testIgnoresForeignIndexRows() {
+        List<Map<String, String>> index = index("people_1", "other_5", "people_x", null);
+
+        assertEquals(new ArrayList<String>(), ShardedUpload.staleShards(index, "people", 1));
+    }
+
+    private List<Map<String, String>> index(String... worksheets) {
+        List<Map<String, String>> index = new ArrayList<>();
+        for (String worksheet : worksheets) {
+            Map<String, String> row = new HashMap<>();
+            row.put("worksheet", worksheet);
+            index.add(row);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,60 @@
+package querysheet.upload;
+
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.GenericJson;
+import org.junit.Test;
+import querysheet.google.GoogleClients;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SheetsRangeWriterTest {
+
+    public class CannedWriter extends SheetsRangeWriter {
+
+        private final String response;
+
+        private String url;
+
+        public CannedWriter(String response) {
+            super(new NetHttpTransport().createRequestFactory(), "http://localhost/");
+            this.response = response;
+        }
+
+        @Override
+        protected GenericJson execute(HttpRequest request) throws IOException {
+            url = request.getUrl().build();
+            return GoogleClients.jsonFactory().fromString(response, GenericJson.class);
+        }
+    }
+
+    @Test
+    public void testReadsRowsKeyedByHeader() {
+        CannedWriter writer = new CannedWriter("{\"values\": ["
+                + "[\"Query\", \" Spreadsheet \", \"\", \"depends_on\"],"
+                + "[\"select 1\", \"key\", \"ignored\"],"
+                + "[\"select 2\", \"\", \"\", \"a\"],"
+                + "[],"
+                + "[\"select 3\"]]}");
+
+        List<Map<String, String>> rows = writer.readMaps("setup-key", "Setup");
+
+        assertEquals("http://localhost/v4/spreadsheets/setup-key/values/'Setup'", writer.url);
+        assertEquals(2, rows.size());
+        assertEquals("select 1", rows.get(0).get("query"));
+        assertEquals("key", rows.get(0).get("spreadsheet"));
+        assertEquals(2, rows.get(0).size());
+        assertEquals("select 2", rows.get(1).get("query"));
+        assertNull(rows.get(1).get("spreadsheet"));
+        assertEquals("a", rows.get(1).get("depends_on"));
+    }
+
+    @Test
+    public void testEmptySheetHasNoRows() {
+        assertTrue(new CannedWriter("{\"range\": \"'Setup'!A1:Z1000\"}").readMaps("setup-key", "Setup").isEmpty());
+    }
+}